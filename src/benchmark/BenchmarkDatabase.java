@@ -0,0 +1,188 @@
+package benchmark;
+
+import db.ConnectionPool;
+import db.DbException;
+import model.dao.impl.DepartmentDaoJDBC;
+import model.dao.impl.SellerDaoJDBC;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/*
+prepara o banco usado pelo benchmark: recria as tabelas department e seller (e as de versões do findModifiedSince)
+e insere departamentos e vendedores gerados a partir de uma semente fixa, para que duas execuções com os mesmos
+parâmetros tenham os mesmos dados.
+APAGA as tabelas existentes, por isso só deve apontar para um banco criado para o benchmark.
+ */
+public class BenchmarkDatabase {
+    private static final String[] DDL = {
+            "DROP TABLE IF EXISTS seller_scan",
+            "DROP TABLE IF EXISTS seller",
+            "DROP TABLE IF EXISTS department",
+            "DROP TABLE IF EXISTS seller_tombstone",
+            "DROP TABLE IF EXISTS department_tombstone",
+            "DROP TABLE IF EXISTS row_version",
+            "CREATE TABLE department ("
+                    + "Id int NOT NULL AUTO_INCREMENT, "
+                    + "Name varchar(60) DEFAULT NULL, "
+                    + "RowVersion bigint NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY (Id))",
+            "CREATE TABLE seller ("
+                    + "Id int NOT NULL AUTO_INCREMENT, "
+                    + "Name varchar(60) NOT NULL, "
+                    + "Email varchar(100) NOT NULL, "
+                    + "BirthDate datetime NOT NULL, "
+                    + "BaseSalary double NOT NULL, "
+                    + "DepartmentId int NOT NULL, "
+                    + "RowVersion bigint NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY (Id), "
+                    + "FOREIGN KEY (DepartmentId) REFERENCES department (Id))",
+            //cópia da seller, aumentada pelo seedScanTable, lida pelos cenários de mapeamento de linhas
+            "CREATE TABLE seller_scan ("
+                    + "Id int NOT NULL AUTO_INCREMENT, "
+                    + "Name varchar(60) NOT NULL, "
+                    + "Email varchar(100) NOT NULL, "
+                    + "BirthDate datetime NOT NULL, "
+                    + "BaseSalary double NOT NULL, "
+                    + "DepartmentId int NOT NULL, "
+                    + "PRIMARY KEY (Id))",
+            "CREATE INDEX idx_seller_name_id ON seller (Name, Id)",
+            "CREATE INDEX idx_seller_dep_name_id ON seller (DepartmentId, Name, Id)",
+            "CREATE INDEX idx_seller_dep_birth_salary ON seller (DepartmentId, BirthDate, BaseSalary)",
+            "CREATE INDEX idx_department_name_id ON department (Name, Id)",
+            "CREATE INDEX idx_seller_row_version ON seller (RowVersion)",
+            "CREATE INDEX idx_department_row_version ON department (RowVersion)",
+            "CREATE TABLE row_version ("
+                    + "Name varchar(60) NOT NULL, "
+                    + "Version bigint NOT NULL, "
+                    + "PRIMARY KEY (Name))",
+            "INSERT INTO row_version (Name, Version) VALUES ('seller', 0), ('department', 0)",
+            "CREATE TABLE seller_tombstone ("
+                    + "Id int NOT NULL, "
+                    + "RowVersion bigint NOT NULL, "
+                    + "PRIMARY KEY (Id))",
+            "CREATE INDEX idx_seller_tombstone_row_version ON seller_tombstone (RowVersion)",
+            "CREATE TABLE department_tombstone ("
+                    + "Id int NOT NULL, "
+                    + "RowVersion bigint NOT NULL, "
+                    + "PRIMARY KEY (Id))",
+            "CREATE INDEX idx_department_tombstone_row_version ON department_tombstone (RowVersion)"
+    };
+
+    private static final String[] FIRST_NAMES = {"Alex", "Bob", "Maria", "Martha", "Donald", "Greg", "Ana", "Lucas"};
+    private static final String[] LAST_NAMES = {"Brown", "Green", "Grey", "Red", "Blue", "Pink", "Silva", "Souza"};
+
+    private final ConnectionPool pool;
+    private final long seed;
+    private int[] departmentIds = new int[0];
+    private int[] sellerIds = new int[0];
+
+    public BenchmarkDatabase(ConnectionPool pool, long seed) {
+        this.pool = pool;
+        this.seed = seed;
+    }
+
+    //recria o esquema e insere os dados iniciais usando o insertAll dos DAOs
+    public void seed(int departments, int sellers) {
+        createSchema();
+        //com as versões ligadas, para o cenário do findModifiedSince ter o feed 1..N
+        SellerDaoJDBC sellerDao = new SellerDaoJDBC(pool);
+        sellerDao.setRowVersions(true);
+        DepartmentDaoJDBC departmentDao = new DepartmentDaoJDBC(pool);
+        departmentDao.setRowVersions(true);
+
+        List<Department> deps = new ArrayList<>(departments);
+        for (int i = 1; i <= departments; i++) {
+            deps.add(new Department(null, "Department " + i));
+        }
+        departmentDao.insertAll(deps);
+        departmentIds = new int[deps.size()];
+        for (int i = 0; i < deps.size(); i++) {
+            departmentIds[i] = deps.get(i).getId();
+        }
+
+        Random random = new Random(seed);
+        sellerIds = new int[sellers];
+        List<Seller> chunk = new ArrayList<>(10_000);
+        int inserted = 0;
+        while (inserted < sellers) {
+            chunk.clear();
+            int n = Math.min(10_000, sellers - inserted);
+            for (int i = 0; i < n; i++) {
+                chunk.add(newSeller(random, deps.get(random.nextInt(deps.size()))));
+            }
+            sellerDao.insertAll(chunk);
+            for (Seller obj : chunk) {
+                sellerIds[inserted++] = obj.getId();
+            }
+        }
+    }
+
+    /*
+    enche a seller_scan com rows linhas: copia a seller e depois copia a própria seller_scan até chegar ao total,
+    sem passar pelos DAOs. Chamado depois do seed; retorna quantas linhas a tabela ficou.
+     */
+    public int seedScanTable(int rows) {
+        String columns = "Name, Email, BirthDate, BaseSalary, DepartmentId";
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM seller_scan");
+            int count = Math.min(rows, sellerIds.length);
+            if (count == 0) {
+                return 0;
+            }
+            st.executeUpdate("INSERT INTO seller_scan (" + columns + ") SELECT " + columns
+                    + " FROM seller ORDER BY Id LIMIT " + count);
+            while (count < rows) {
+                int n = Math.min(count, rows - count);
+                st.executeUpdate("INSERT INTO seller_scan (" + columns + ") SELECT " + columns
+                        + " FROM seller_scan ORDER BY Id LIMIT " + n);
+                count += n;
+            }
+            return count;
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+    }
+
+    //ids dos departamentos inseridos pelo seed
+    public int[] getDepartmentIds() {
+        return departmentIds;
+    }
+
+    //ids dos vendedores inseridos pelo seed
+    public int[] getSellerIds() {
+        return sellerIds;
+    }
+
+    //gera um vendedor com dados aleatórios a partir do Random informado
+    public static Seller newSeller(Random random, Department department) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        long birth = -315_619_200_000L + (long) (random.nextDouble() * 1_262_304_000_000L);
+        return new Seller(null,
+                first + " " + last + " " + random.nextInt(1_000_000),
+                first.toLowerCase() + "." + last.toLowerCase() + "@gmail.com",
+                new Date(birth),
+                1000.0 + random.nextInt(9000),
+                new Department(department.getId(), null));
+    }
+
+    private void createSchema() {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            for (String sql : DDL) {
+                st.execute(sql);
+            }
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package benchmark;
+
+import db.ConnectionPool;
+import db.DB;
+import db.DbException;
+import model.dao.ChangeToken;
+import model.dao.DepartmentDao;
+import model.dao.ExportFormat;
+import model.dao.SellerDao;
+import model.dao.impl.DepartmentDaoJDBC;
+import model.dao.impl.SellerDaoJDBC;
+import model.dao.impl.SellerRowMapper;
+import model.dao.impl.WriteBehindSellerDao;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/*
+benchmark da camada DAO. Recria e popula um banco próprio (BenchmarkDatabase) e mede cada operação dos DAOs
+com 1 thread e com bench.threads threads, mostrando operações por segundo e latência (média, p50, p99, p99.9).
+
+Configuração por propriedades do sistema (-Dnome=valor):
+  bench.url          url JDBC do banco do benchmark, obrigatória (ex.: jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1)
+  bench.user         usuário do banco
+  bench.password     senha do banco
+  bench.departments  quantidade de departamentos (padrão 10)
+  bench.sellers      quantidade de vendedores (padrão 10000)
+  bench.threads      threads do teste concorrente (padrão: número de processadores)
+  bench.warmup       segundos de aquecimento por cenário (padrão 2)
+  bench.measure      segundos de medição por cenário (padrão 5)
+  bench.seed         semente dos dados e das escolhas aleatórias (padrão 42)
+  bench.filter       expressão regular com os cenários a rodar (padrão: todos)
+  bench.scanParallelism  graus de paralelismo dos scans paralelos, separados por vírgula (padrão 2,4,8)
+  bench.mappingRows  linhas da tabela lida pelos cenários de mapeamento por nome e por índice (padrão 1000000, 0 desliga)
+ */
+public class DaoBenchmark {
+    //limite de amostras de latência guardadas por thread
+    private static final int MAX_SAMPLES = 1_000_000;
+    //mesma consulta do SellerDaoJDBC, na cópia grande da tabela seller
+    private static final String SCAN_SQL = "SELECT seller_scan.*,department.Name as DepName "
+            + "FROM seller_scan INNER JOIN department ON seller_scan.DepartmentId = department.Id";
+
+    //recebe o resultado dos cenários de mapeamento, para o JIT não descartar a leitura das colunas
+    private static volatile long sink;
+
+    //operação medida; retorna false quando não há mais trabalho (ex.: nada para deletar)
+    interface Operation {
+        boolean run(Random random);
+    }
+
+    private final Map<String, Operation> scenarios = new LinkedHashMap<>();
+    private final int warmupSeconds;
+    private final int measureSeconds;
+    private final long seed;
+
+    public DaoBenchmark(int warmupSeconds, int measureSeconds, long seed) {
+        this.warmupSeconds = warmupSeconds;
+        this.measureSeconds = measureSeconds;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) {
+        String url = System.getProperty("bench.url");
+        if (url == null || url.trim().isEmpty()) {
+            System.out.println("Set -Dbench.url to a database dedicated to the benchmark (its tables are dropped).");
+            return;
+        }
+        Properties props = new Properties();
+        if (System.getProperty("bench.user") != null) {
+            props.setProperty("user", System.getProperty("bench.user"));
+        }
+        if (System.getProperty("bench.password") != null) {
+            props.setProperty("password", System.getProperty("bench.password"));
+        }
+        int departments = Integer.getInteger("bench.departments", 10);
+        int sellers = Integer.getInteger("bench.sellers", 10_000);
+        int threads = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        long seed = Long.getLong("bench.seed", 42L);
+        Pattern filter = Pattern.compile(System.getProperty("bench.filter", ".*"));
+        int[] scanParallelism = parseInts(System.getProperty("bench.scanParallelism", "2,4,8"));
+        int mappingRows = Integer.getInteger("bench.mappingRows", 1_000_000);
+
+        //o pool comporta o maior scan paralelo rodando sozinho
+        int maxConnections = Math.max(2, threads);
+        for (int p : scanParallelism) {
+            maxConnections = Math.max(maxConnections, p);
+        }
+        ConnectionPool pool = new ConnectionPool(url, props, Math.min(2, threads), maxConnections,
+                0, 60_000, 2);
+        DB.setPool(pool);
+
+        PrintStream out = System.out;
+        //os DAOs escrevem uma linha a cada escrita, o que distorceria a medição
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            out.println("Seeding " + departments + " departments and " + sellers + " sellers...");
+            BenchmarkDatabase database = new BenchmarkDatabase(pool, seed);
+            database.seed(departments, sellers);
+
+            DaoBenchmark benchmark = new DaoBenchmark(Integer.getInteger("bench.warmup", 2),
+                    Integer.getInteger("bench.measure", 5), seed);
+            benchmark.registerDaoScenarios(new SellerDaoJDBC(pool), new DepartmentDaoJDBC(pool), database);
+            benchmark.registerScanScenarios(new SellerDaoJDBC(pool), scanParallelism);
+            SellerDaoJDBC versionedSellerDao = new SellerDaoJDBC(pool);
+            versionedSellerDao.setRowVersions(true);
+            benchmark.registerRowVersionScenarios(versionedSellerDao, database);
+            //a tabela grande só é criada se algum cenário de mapeamento for rodar
+            if (mappingRows > 0 && (filter.matcher("seller.map(" + mappingRows + ") byLabel").matches()
+                    || filter.matcher("seller.map(" + mappingRows + ") byIndex").matches())) {
+                out.println("Seeding " + mappingRows + " rows for the mapping scenarios...");
+                benchmark.registerMappingScenarios(database.seedScanTable(mappingRows));
+            }
+
+            out.println(String.format("%-32s %7s %10s %12s %10s %10s %10s %10s",
+                    "scenario", "threads", "ops", "ops/s", "avg(us)", "p50(us)", "p99(us)", "p999(us)"));
+            for (Map.Entry<String, Operation> e : benchmark.scenarios.entrySet()) {
+                if (!filter.matcher(e.getKey()).matches()) {
+                    continue;
+                }
+                int[] threadCounts = threads > 1 ? new int[]{1, threads} : new int[]{1};
+                for (int t : threadCounts) {
+                    out.println(benchmark.run(e.getKey(), e.getValue(), t));
+                }
+            }
+        }
+        finally {
+            System.setOut(out);
+            DB.closeConnection();
+        }
+    }
+
+    //adiciona um cenário; a ordem de registro é a ordem de execução
+    public void register(String name, Operation operation) {
+        scenarios.put(name, operation);
+    }
+
+    //cenários para cada método do SellerDao e do DepartmentDao
+    public void registerDaoScenarios(SellerDao sellerDao, DepartmentDao departmentDao, BenchmarkDatabase database) {
+        int[] sellerIds = database.getSellerIds();
+        int[] departmentIds = database.getDepartmentIds();
+        //ids criados pelos cenários de insert e removidos pelos de delete
+        ConcurrentLinkedQueue<Integer> insertedSellers = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Integer> insertedDepartments = new ConcurrentLinkedQueue<>();
+
+        register("seller.findById", random -> {
+            sellerDao.findById(sellerIds[random.nextInt(sellerIds.length)]);
+            return true;
+        });
+        register("seller.findByIds(200)", random -> {
+            List<Integer> ids = new ArrayList<>(200);
+            for (int i = 0; i < 200; i++) {
+                ids.add(sellerIds[random.nextInt(sellerIds.length)]);
+            }
+            sellerDao.findByIds(ids);
+            return true;
+        });
+        register("seller.findByDepartment", random -> {
+            sellerDao.findByDepartment(new Department(departmentIds[random.nextInt(departmentIds.length)], null));
+            return true;
+        });
+        register("seller.findAll", random -> {
+            sellerDao.findAll();
+            return true;
+        });
+        register("seller.findAllAsTable", random -> {
+            sellerDao.findAllAsTable().totalSalaryByDepartment();
+            return true;
+        });
+        //export da tabela inteira para um arquivo temporário, em cada formato
+        for (ExportFormat format : ExportFormat.values()) {
+            Path file = Paths.get(System.getProperty("java.io.tmpdir"),
+                    "seller-benchmark-export." + format.name().toLowerCase());
+            file.toFile().deleteOnExit();
+            register("seller.exportAll " + format.name().toLowerCase(), random -> {
+                sellerDao.exportAll(format, file);
+                return true;
+            });
+        }
+        register("seller.findSalaryStatsByDepartment", random -> {
+            sellerDao.findSalaryStatsByDepartment();
+            return true;
+        });
+        register("seller.streamAll", random -> {
+            sellerDao.forEach(obj -> { });
+            return true;
+        });
+        register("seller.insert", random -> {
+            Seller obj = BenchmarkDatabase.newSeller(random,
+                    new Department(departmentIds[random.nextInt(departmentIds.length)], null));
+            sellerDao.insert(obj);
+            insertedSellers.add(obj.getId());
+            return true;
+        });
+        register("seller.update", random -> {
+            updateSeller(sellerDao, random, sellerIds[random.nextInt(sellerIds.length)], departmentIds);
+            return true;
+        });
+        //50 updates com um commit cada, contra os mesmos 50 updates em um único DB.inTransaction
+        //os ids são atualizados em ordem crescente para que transações concorrentes não entrem em deadlock
+        register("seller.update x50", random -> {
+            for (int id : sortedIds(random, sellerIds, 50)) {
+                updateSeller(sellerDao, random, id, departmentIds);
+            }
+            return true;
+        });
+        register("seller.update x50 inTransaction", random -> {
+            int[] ids = sortedIds(random, sellerIds, 50);
+            DB.inTransaction(() -> {
+                for (int id : ids) {
+                    updateSeller(sellerDao, random, id, departmentIds);
+                }
+            });
+            return true;
+        });
+        /*
+        rajada de 50 updates em 10 sellers, um UPDATE por chamada, contra a mesma rajada no WriteBehindSellerDao:
+        lá os updates do mesmo id viram um só e o flush() grava o resto em um lote, em uma transação.
+         */
+        WriteBehindSellerDao writeBehindDao = new WriteBehindSellerDao(sellerDao, 500, 200);
+        register("seller.update burst x50", random -> {
+            for (int id : sortedIds(random, sortedIds(random, sellerIds, 10), 50)) {
+                updateSeller(sellerDao, random, id, departmentIds);
+            }
+            return true;
+        });
+        register("seller.update burst x50 writeBehind", random -> {
+            for (int id : sortedIds(random, sortedIds(random, sellerIds, 10), 50)) {
+                updateSeller(writeBehindDao, random, id, departmentIds);
+            }
+            writeBehindDao.flush();
+            return true;
+        });
+        //sincronização de um registro: findById e depois insert ou update, contra um único upsert
+        register("seller.findById+update", random -> {
+            Seller obj = randomSeller(random, sellerIds[random.nextInt(sellerIds.length)], departmentIds);
+            if (sellerDao.findById(obj.getId()) != null) {
+                sellerDao.update(obj);
+            }
+            else {
+                sellerDao.insert(obj);
+            }
+            return true;
+        });
+        register("seller.upsert", random -> {
+            sellerDao.upsert(randomSeller(random, sellerIds[random.nextInt(sellerIds.length)], departmentIds));
+            return true;
+        });
+        //Seller lido do BD com só o salário alterado: o update grava apenas a coluna BaseSalary
+        register("seller.findById+update salary", random -> {
+            Seller obj = sellerDao.findById(sellerIds[random.nextInt(sellerIds.length)]);
+            obj.setBaseSalary(1000 + random.nextInt(9000));
+            sellerDao.update(obj);
+            return true;
+        });
+        register("seller.deleteById", random -> {
+            Integer id = insertedSellers.poll();
+            if (id == null) {
+                return false;
+            }
+            sellerDao.deleteById(id);
+            return true;
+        });
+        register("department.findById", random -> {
+            departmentDao.findById(departmentIds[random.nextInt(departmentIds.length)]);
+            return true;
+        });
+        register("department.findAll", random -> {
+            departmentDao.findAll();
+            return true;
+        });
+        register("department.insert", random -> {
+            Department obj = new Department(null, "Department " + random.nextInt(1_000_000));
+            departmentDao.insert(obj);
+            insertedDepartments.add(obj.getId());
+            return true;
+        });
+        register("department.update", random -> {
+            int id = departmentIds[random.nextInt(departmentIds.length)];
+            departmentDao.update(new Department(id, "Department " + id));
+            return true;
+        });
+        register("department.deleteById", random -> {
+            Integer id = insertedDepartments.poll();
+            if (id == null) {
+                return false;
+            }
+            departmentDao.deleteById(id);
+            return true;
+        });
+    }
+
+    /*
+    findAll em uma conexão contra o scan em faixas de id com cada grau de paralelismo, com e sem a ordenação por nome.
+    Compare com o cenário seller.findAll.
+     */
+    public void registerScanScenarios(SellerDao sellerDao, int[] parallelism) {
+        for (int p : parallelism) {
+            register("seller.findAllParallel(" + p + ")", random -> {
+                sellerDao.findAllParallel(p, false);
+                return true;
+            });
+            register("seller.findAllParallel(" + p + ") byName", random -> {
+                sellerDao.findAllParallel(p, true);
+                return true;
+            });
+            register("seller.forEachParallel(" + p + ")", random -> {
+                sellerDao.forEachParallel(p, obj -> { });
+                return true;
+            });
+        }
+    }
+
+    /*
+    a mesma consulta grande lida de dois jeitos: procurando cada coluna pelo nome em toda linha (como o DAO fazia
+    antes do SellerRowMapper) e pelo SellerRowMapper, que procura os índices uma vez por ResultSet. As duas rodam
+    em um DB.inTransaction, onde o mapper cria um Department por linha como a leitura por nome, e com o mesmo
+    fetchSize do SellerDaoJDBC; a diferença entre elas é só a busca das colunas.
+     */
+    public void registerMappingScenarios(int rows) {
+        register("seller.map(" + rows + ") byLabel", random -> {
+            scan(false);
+            return true;
+        });
+        register("seller.map(" + rows + ") byIndex", random -> {
+            scan(true);
+            return true;
+        });
+    }
+
+    private static void scan(boolean byIndex) {
+        DB.inTransaction(() -> {
+            PreparedStatement st = null;
+            ResultSet rs = null;
+            try {
+                st = DB.currentTransaction().prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                st.setFetchSize(1000);
+                rs = st.executeQuery();
+                long sum = 0;
+                if (byIndex) {
+                    SellerRowMapper mapper = new SellerRowMapper(rs);
+                    while (rs.next()) {
+                        sum += mapper.map(rs).getId();
+                    }
+                }
+                else {
+                    while (rs.next()) {
+                        Department dep = new Department();
+                        dep.setId(rs.getInt("DepartmentId"));
+                        dep.setName(rs.getString("DepName"));
+                        Seller obj = new Seller();
+                        obj.setId(rs.getInt("Id"));
+                        obj.setName(rs.getString("Name"));
+                        obj.setEmail(rs.getString("Email"));
+                        obj.setBaseSalary(rs.getDouble("BaseSalary"));
+                        obj.setBirthDate(rs.getDate("BirthDate"));
+                        obj.setDepartment(dep);
+                        sum += obj.getId();
+                    }
+                }
+                sink = sum;
+            }
+            catch (SQLException e) {
+                throw new DbException(e.getMessage(), e);
+            }
+            finally {
+                DB.closeResultSet(rs);
+                DB.closeStatement(st);
+            }
+        });
+    }
+
+    /*
+    insert e update com as versões de linha ligadas (changeFeed.tables=seller) e o findModifiedSince, que só funciona
+    com elas. Compare com seller.insert e seller.update, com 1 thread e com várias: o UPDATE no contador trava a
+    linha dele até o commit, então as escritas concorrentes na seller são gravadas uma de cada vez.
+     */
+    public void registerRowVersionScenarios(SellerDaoJDBC versionedDao, BenchmarkDatabase database) {
+        int[] sellerIds = database.getSellerIds();
+        int[] departmentIds = database.getDepartmentIds();
+        register("seller.insert rowVersions", random -> {
+            Seller obj = BenchmarkDatabase.newSeller(random,
+                    new Department(departmentIds[random.nextInt(departmentIds.length)], null));
+            versionedDao.insert(obj);
+            return true;
+        });
+        register("seller.update rowVersions", random -> {
+            updateSeller(versionedDao, random, sellerIds[random.nextInt(sellerIds.length)], departmentIds);
+            return true;
+        });
+        //uma página de 100 alterações do fim do feed (o seed grava as versões 1..N), para comparar com o findAll
+        ChangeToken recent = new ChangeToken(Math.max(0, sellerIds.length - 100));
+        register("seller.findModifiedSince(100)", random -> {
+            versionedDao.findModifiedSince(recent, 100);
+            return true;
+        });
+    }
+
+    private static int[] parseInts(String text) {
+        String[] parts = text.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    //atualiza o seller com dados aleatórios
+    private static void updateSeller(SellerDao sellerDao, Random random, int id, int[] departmentIds) {
+        sellerDao.update(randomSeller(random, id, departmentIds));
+    }
+
+    //seller com o id informado e dados aleatórios
+    private static Seller randomSeller(Random random, int id, int[] departmentIds) {
+        Seller obj = BenchmarkDatabase.newSeller(random,
+                new Department(departmentIds[random.nextInt(departmentIds.length)], null));
+        obj.setId(id);
+        return obj;
+    }
+
+    //n ids sorteados entre os informados, em ordem crescente
+    private static int[] sortedIds(Random random, int[] ids, int n) {
+        int[] chosen = new int[n];
+        for (int i = 0; i < n; i++) {
+            chosen[i] = ids[random.nextInt(ids.length)];
+        }
+        Arrays.sort(chosen);
+        return chosen;
+    }
+
+    //aquece e depois mede um cenário com o número de threads informado
+    public Result run(String name, Operation operation, int threads) {
+        execute(operation, threads, warmupSeconds, false);
+        long[][] samples = new long[threads][];
+        long[] counts = new long[threads];
+        long elapsed = execute(operation, threads, measureSeconds, true, samples, counts);
+        return Result.of(name, threads, elapsed, counts, samples);
+    }
+
+    private long execute(Operation operation, int threads, int seconds, boolean record) {
+        return execute(operation, threads, seconds, record, new long[threads][], new long[threads]);
+    }
+
+    private long execute(Operation operation, int threads, int seconds, boolean record,
+                         long[][] samples, long[] counts) {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L + 50_000_000L;
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed + index);
+                long[] buffer = new long[record ? 1024 : 0];
+                long n = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        if (!operation.run(random)) {
+                            break;
+                        }
+                        long latency = System.nanoTime() - begin;
+                        if (record && n < MAX_SAMPLES) {
+                            if (n == buffer.length) {
+                                buffer = Arrays.copyOf(buffer, (int) Math.min(MAX_SAMPLES, n * 2));
+                            }
+                            buffer[(int) n] = latency;
+                        }
+                        n++;
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+                finally {
+                    counts[index] = n;
+                    samples[index] = Arrays.copyOf(buffer, (int) Math.min(n, buffer.length));
+                    done.countDown();
+                }
+            }, "bench-" + t);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    //resultado de um cenário
+    public static final class Result {
+        final String name;
+        final int threads;
+        final long ops;
+        final double opsPerSecond;
+        final double avgMicros;
+        final double p50Micros;
+        final double p99Micros;
+        final double p999Micros;
+
+        private Result(String name, int threads, long ops, double opsPerSecond, double avgMicros,
+                       double p50Micros, double p99Micros, double p999Micros) {
+            this.name = name;
+            this.threads = threads;
+            this.ops = ops;
+            this.opsPerSecond = opsPerSecond;
+            this.avgMicros = avgMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+        }
+
+        static Result of(String name, int threads, long elapsedNanos, long[] counts, long[][] samples) {
+            long ops = 0;
+            int total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                ops += counts[i];
+                total += samples[i].length;
+            }
+            long[] all = new long[total];
+            int pos = 0;
+            long sum = 0;
+            for (long[] s : samples) {
+                System.arraycopy(s, 0, all, pos, s.length);
+                pos += s.length;
+                for (long v : s) {
+                    sum += v;
+                }
+            }
+            Arrays.sort(all);
+            return new Result(name, threads, ops,
+                    ops / (elapsedNanos / 1e9),
+                    total > 0 ? sum / (double) total / 1e3 : 0,
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s %7d %10d %12.1f %10.1f %10.1f %10.1f %10.1f",
+                    name, threads, ops, opsPerSecond, avgMicros, p50Micros, p99Micros, p999Micros);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+pool de conexões com tamanho mínimo e máximo. Cada operação dos DAOs pega uma conexão emprestada (borrow) e devolve
+no final chamando close() na conexão, que em vez de fechar a conexão física devolve ela para o pool.
+ */
+public class ConnectionPool {
+    //tempo total que a thread atual já passou esperando conexões, lido pelas métricas dos DAOs
+    private static final ThreadLocal<long[]> WAIT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final String url;
+    private final Properties props;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    //quantos PreparedStatements cada conexão guarda para reuso (0 desliga o cache)
+    private final int statementCacheSize;
+
+    //conexões físicas livres, a mais recente fica no começo da fila (LIFO) para as antigas ficarem ociosas e expirarem
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    //controla quantas conexões podem estar emprestadas ao mesmo tempo (maxSize)
+    private final Semaphore permits;
+    //total de conexões físicas abertas (livres + emprestadas)
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, Properties props, int minSize, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, int validationTimeoutSeconds) {
+        this(url, props, minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis, validationTimeoutSeconds, 50);
+    }
+
+    public ConnectionPool(String url, Properties props, int minSize, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, int validationTimeoutSeconds, int statementCacheSize) {
+        if (url == null || url.trim().isEmpty()) {
+            throw new IllegalArgumentException("Database url cannot be null or empty.");
+        }
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.props = props;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        //aquecimento: abre as conexões mínimas já na inicialização; se uma falhar, fecha as que já abriu
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.offerFirst(openConnection());
+            }
+        }
+        catch (RuntimeException e) {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                discard(pc);
+            }
+            throw e;
+        }
+
+        //thread que remove conexões ociosas acima do tamanho mínimo
+        if (idleTimeoutMillis > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "connection-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1000L, idleTimeoutMillis / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+        else {
+            evictor = null;
+        }
+    }
+
+    //cria o pool a partir das propriedades do db.properties
+    public static ConnectionPool fromProperties(Properties props) {
+        return fromProperties(props, props.getProperty("dburl"));
+    }
+
+    /*
+    pool com as mesmas configurações do db.properties, mas conectado em outro url (ex.: uma réplica de leitura).
+    No MySQL o useCursorFetch é ligado quando não estiver no arquivo: sem ele o driver ignora o fetchSize e carrega
+    o resultado inteiro na memória antes da primeira linha dos streams e scans.
+     */
+    public static ConnectionPool fromProperties(Properties props, String url) {
+        Properties connProps = props;
+        if (url != null && url.startsWith("jdbc:mysql:") && props.getProperty("useCursorFetch") == null
+                && !url.contains("useCursorFetch=")) {
+            connProps = new Properties();
+            connProps.putAll(props);
+            connProps.setProperty("useCursorFetch", "true");
+        }
+        return new ConnectionPool(
+                url,
+                connProps,
+                Integer.parseInt(props.getProperty("pool.minSize", "2")),
+                Integer.parseInt(props.getProperty("pool.maxSize", "10")),
+                Long.parseLong(props.getProperty("pool.idleTimeoutMillis", "300000")),
+                Long.parseLong(props.getProperty("pool.borrowTimeoutMillis", "30000")),
+                Integer.parseInt(props.getProperty("pool.validationTimeoutSeconds", "2")),
+                Integer.parseInt(props.getProperty("pool.statementCacheSize", "50")));
+    }
+
+    /*
+    pega uma conexão emprestada do pool. Se não houver conexão livre e o pool já estiver no tamanho máximo,
+    espera até borrowTimeoutMillis antes de lançar DbException. A causa é uma SQLTransientConnectionException, para
+    quem trata a falha (ex.: WriteBehindSellerDao) saber que pode tentar de novo.
+     */
+    public Connection borrow() {
+        if (closed) {
+            throw new DbException("Connection pool is closed.",
+                    new SQLNonTransientConnectionException("Connection pool is closed.", "08003"));
+        }
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                String msg = "Timeout waiting for a database connection after " + borrowTimeoutMillis + " ms";
+                throw new DbException(msg, new SQLTransientConnectionException(msg));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String msg = "Interrupted while waiting for a database connection";
+            throw new DbException(msg, new SQLTransientConnectionException(msg, e));
+        }
+        finally {
+            WAIT_NANOS.get()[0] += System.nanoTime() - waitStart;
+        }
+        try {
+            PooledConnection pc;
+            //validação no empréstimo: descarta conexões que o servidor já fechou
+            while ((pc = idle.pollFirst()) != null) {
+                if (isValid(pc.physical)) {
+                    return pc.lease();
+                }
+                discard(pc);
+            }
+            return openConnection().lease();
+        }
+        catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /*
+    devolve a conexão ao pool, desfazendo transações esquecidas abertas e restaurando o autoCommit e, se quem usou
+    tiver mudado, o readOnly, o isolamento e o catalog de quando a conexão foi aberta.
+     */
+    void release(PooledConnection pc) {
+        try {
+            if (pc.statements != null) {
+                pc.statements.releaseAll();
+            }
+            if (!pc.physical.getAutoCommit()) {
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            if (pc.stateChanged) {
+                pc.restoreState();
+            }
+            if (closed) {
+                discard(pc);
+            }
+            else {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pc);
+            }
+        }
+        catch (SQLException e) {
+            discard(pc);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    //soma do tempo (ns) que a thread atual esperou por conexões livres em todos os pools
+    public static long currentThreadWaitNanos() {
+        return WAIT_NANOS.get()[0];
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    //quantas conexões estão emprestadas agora
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    //fecha todas as conexões livres; as emprestadas são fechadas quando forem devolvidas
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsed >= idleTimeoutMillis && idle.remove(pc)) {
+                discard(pc);
+            }
+        }
+    }
+
+    private boolean isValid(Connection c) {
+        try {
+            return c.isValid(validationTimeoutSeconds);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() {
+        Connection physical = null;
+        try {
+            physical = DriverManager.getConnection(url, props);
+            PooledConnection pc = new PooledConnection(physical);
+            totalConnections.incrementAndGet();
+            return pc;
+        }
+        catch (SQLException e) {
+            if (physical != null) {
+                try {
+                    physical.close();
+                }
+                catch (SQLException ex) {
+                    //a conexão não vai ser usada, não há o que fazer
+                }
+            }
+            throw new DbException(e.getMessage(), e);
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        totalConnections.decrementAndGet();
+        if (pc.statements != null) {
+            pc.statements.close();
+        }
+        try {
+            pc.physical.close();
+        }
+        catch (SQLException e) {
+            //conexão já está sendo descartada, não há o que fazer
+        }
+    }
+
+    //conexão física guardada pelo pool
+    final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastUsed = System.currentTimeMillis();
+        //estado de quando a conexão foi aberta, restaurado no release se quem pegou emprestado mudou
+        private final boolean readOnly;
+        private final int isolation;
+        private final String catalog;
+        volatile boolean stateChanged = false;
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.readOnly = physical.isReadOnly();
+            this.isolation = physical.getTransactionIsolation();
+            this.catalog = physical.getCatalog();
+            this.statements = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        }
+
+        void restoreState() throws SQLException {
+            if (physical.isReadOnly() != readOnly) {
+                physical.setReadOnly(readOnly);
+            }
+            if (physical.getTransactionIsolation() != isolation) {
+                physical.setTransactionIsolation(isolation);
+            }
+            if (catalog != null && !catalog.equals(physical.getCatalog())) {
+                physical.setCatalog(catalog);
+            }
+            stateChanged = false;
+        }
+
+        //cria o proxy entregue aos DAOs, cujo close() devolve a conexão ao pool
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned = false;
+
+        LeaseHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!returned) {
+                    returned = true;
+                    release(pc);
+                }
+                return null;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("isClosed")) {
+                return returned || pc.physical.isClosed();
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            //mudanças que precisam ser desfeitas antes da conexão ir para o próximo
+            if (name.equals("setReadOnly") || name.equals("setTransactionIsolation") || name.equals("setCatalog")) {
+                pc.stateChanged = true;
+            }
+            //prepareStatement(sql) e prepareStatement(sql, autoGeneratedKeys) passam pelo cache de statements
+            if (name.equals("prepareStatement") && pc.statements != null
+                    && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer))) {
+                return pc.statements.prepare((String) args[0],
+                        args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS);
+            }
+            try {
+                return method.invoke(pc.physical, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -4,52 +4,189 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.*;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 public class DB {
 
-    //objeto de conexão com o banco de dados do jdbc, iniciamos ele como null só pra iniciar mesmo.
-    private static Connection conn = null;
+    //pool de conexões com o banco de dados, criado na primeira vez que alguém precisar de uma conexão.
+    private static volatile ConnectionPool pool = null;
+    //escolhe entre o primário (pool) e as réplicas de leitura
+    private static volatile ReplicaRouter router = null;
 
-    //método para conectar de fato ao banco de dados e retornar a conexão.
+    //retorna o pool de conexões, criando (e aquecendo) ele a partir do db.properties se ainda não existir.
+    public static ConnectionPool getPool() {
+        if (pool == null) {
+            synchronized (DB.class) {
+                if (pool == null) {
+                    //pega as propriedades do bd usando o loadProperties criado lá embaixo.
+                    pool = ConnectionPool.fromProperties(loadProperties());
+                }
+            }
+        }
+        return pool;
+    }
+
+    //permite usar outro pool, por exemplo um apontando para um banco embarcado nos testes.
+    public static synchronized void setPool(ConnectionPool newPool) {
+        if (pool != null && pool != newPool) {
+            pool.close();
+        }
+        pool = newPool;
+        //o router apontava para o pool antigo; é montado de novo quando alguém precisar dele
+        if (router != null && router.getPrimary() != newPool) {
+            router.closeReplicas();
+            router = null;
+        }
+    }
+
+    /*
+    retorna o router de leituras e escritas: primário = getPool() e réplicas do replica.urls do db.properties.
+    Sem réplicas configuradas, tudo vai para o primário.
+     */
+    public static ReplicaRouter getRouter() {
+        if (router == null) {
+            synchronized (DB.class) {
+                if (router == null) {
+                    router = ReplicaRouter.fromProperties(getPool(), loadProperties());
+                }
+            }
+        }
+        return router;
+    }
+
+    /*
+    permite usar outro router, por exemplo com réplicas em bancos embarcados nos testes. Chame depois do setPool,
+    que descarta o router do pool anterior.
+     */
+    public static synchronized void setRouter(ReplicaRouter newRouter) {
+        if (router != null && router != newRouter) {
+            router.closeReplicas();
+        }
+        router = newRouter;
+    }
+
+    /*
+    método para pegar uma conexão emprestada do pool. Quem pegou precisa devolver usando closeConnection(conn)
+    (ou conn.close()), senão o pool esgota.
+     */
     public static Connection getConnection() {
-        //se o objeto for nulo, ou seja, desconectado, fazemos a lógica abaixo para conectar ao bd
-        if (conn == null) {
+        return getPool().borrow();
+    }
+
+    //devolve ao pool uma conexão emprestada por getConnection()
+    public static void closeConnection(Connection conn) {
+        if (conn != null) {
             try {
-                //pega as propriedades do bd usando o loadProperties criado lá embaixo.
-                Properties props = loadProperties();
-                //url do banco de dados, a url se chama dburl pq foi definido assim lá no arquivo properties
-                String url = props.getProperty("dburl");
-                //conn recebe a conexão
-                conn = DriverManager.getConnection(url, props);
+                conn.close();
             }
             catch (SQLException e) {
-                throw new DbException(e.getMessage());
+                throw new DbException(e.getMessage(), e);
             }
         }
-        return conn;
     }
 
-    //método para fechar a conexão e evitar possível vazamento de memória
-    public static void closeConnection() {
-        if (conn != null) {
+    /*
+    executa work dentro de uma única transação: todos os métodos dos DAOs chamados pela thread atual durante o work
+    usam a mesma conexão e, em vez de confirmar cada um, o commit é feito uma vez só no final. Se o work lançar
+    exceção (ou algum DAO tiver feito rollback) tudo é desfeito. Chamadas aninhadas participam da transação de fora.
+     */
+    public static <T> T inTransaction(Supplier<T> work) {
+        if (TransactionScope.current() != null) {
+            return work.get();
+        }
+        Connection conn = getConnection();
+        try {
+            TransactionScope scope;
             try {
-                conn.close();
+                scope = TransactionScope.begin(conn);
             }
             catch (SQLException e) {
-                throw new DbException(e.getMessage());
+                throw new DbException(e.getMessage(), e);
             }
+            boolean ok = false;
+            try {
+                T result = work.get();
+                ok = true;
+                if (scope.isRollbackOnly()) {
+                    throw new DbException("Transaction rolled back! A DAO operation failed inside the transaction.");
+                }
+                return result;
+            }
+            finally {
+                //leituras logo depois da transação vão ao primário, como depois de qualquer escrita
+                ReplicaRouter r = router;
+                if (r != null) {
+                    r.markWrite();
+                }
+                try {
+                    scope.end(ok);
+                }
+                catch (SQLException e) {
+                    if (ok) {
+                        throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+                    }
+                }
+                finally {
+                    try {
+                        scope.runAfterCompletion();
+                    }
+                    catch (RuntimeException e) {
+                        if (ok) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            closeConnection(conn);
+        }
+    }
+
+    //mesmo que o inTransaction acima, para trabalhos sem retorno
+    public static void inTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    //conexão da transação aberta pelo inTransaction na thread atual, ou null se não houver
+    public static Connection currentTransaction() {
+        TransactionScope scope = TransactionScope.current();
+        return scope != null ? scope.connection() : null;
+    }
+
+    /*
+    executa callback quando a transação aberta pelo inTransaction na thread atual terminar (com commit ou rollback),
+    já fora dela; sem transação aberta executa na hora. Usado pelos caches para invalidar as entradas só depois que
+    as escritas da transação ficaram visíveis para as outras conexões.
+     */
+    public static void afterCompletion(Runnable callback) {
+        TransactionScope scope = TransactionScope.current();
+        if (scope != null) {
+            scope.afterCompletion(callback);
+        }
+        else {
+            callback.run();
         }
     }
 
+    //método para fechar todas as conexões do pool (e das réplicas) e evitar possível vazamento de memória
+    public static synchronized void closeConnection() {
+        setRouter(null);
+        setPool(null);
+    }
+
     //método para carregar as propriedades, abre o arquivo db.properties, lê os dados e guarda no objeto Properties
-    private static Properties loadProperties() {
+    public static Properties loadProperties() {
         try (FileInputStream fs = new FileInputStream("db.properties")) {
             Properties props = new Properties();
             props.load(fs);
             return props;
         }
         catch (IOException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
         }
     }
 
@@ -59,7 +196,7 @@ public class DB {
             try {
                 st.close();
             } catch (SQLException e) {
-                throw new DbException(e.getMessage());
+                throw new DbException(e.getMessage(), e);
             }
         }
     }
@@ -70,7 +207,7 @@ public class DB {
             try {
                 rs.close();
             } catch (SQLException e) {
-                throw new DbException(e.getMessage());
+                throw new DbException(e.getMessage(), e);
             }
         }
     }
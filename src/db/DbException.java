@@ -5,4 +5,9 @@ public class DbException extends RuntimeException{
     public DbException(String msg) {
         super(msg);
     }
+
+    //mesma mensagem, guardando a exceção original (ex.: a SQLException, com o SQLState do erro)
+    public DbException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
@@ -0,0 +1,121 @@
+package db;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+executor das chamadas assíncronas aos DAOs. Em Java 21+ cada chamada roda em uma virtual thread e um semáforo
+limita quantas rodam ao mesmo tempo (normalmente o tamanho máximo do pool de conexões): milhares de requisições
+podem esperar sem ocupar threads do sistema operacional. Em versões anteriores usa um pool fixo com esse tamanho.
+ */
+public class DbExecutor {
+    private final ExecutorService executor;
+    //limite de chamadas simultâneas quando o executor é de virtual threads (no pool fixo o limite são as threads)
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+
+    public DbExecutor(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be greater than zero.");
+        }
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            this.executor = virtual;
+            this.permits = new Semaphore(maxConcurrency, true);
+            this.virtualThreads = true;
+        }
+        else {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(maxConcurrency, r -> {
+                Thread t = new Thread(r, "db-executor-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.permits = null;
+            this.virtualThreads = false;
+        }
+    }
+
+    //executor com o limite igual ao tamanho máximo do pool de conexões do DB
+    public static DbExecutor forPool(ConnectionPool pool) {
+        return new DbExecutor(pool.getMaxSize());
+    }
+
+    /*
+    executa a chamada em outra thread e devolve o resultado em um CompletableFuture. A chamada usa o WriteMarker de
+    quem a submeteu, para as leituras depois de uma escrita irem ao primário mesmo trocando de thread. O future é
+    completado ainda com o marcador ligado, então os callbacks (thenCompose, thenApply...) que rodam nessa thread e as
+    chamadas que eles submetem também o enxergam.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        ReplicaRouter.WriteMarker marker = ReplicaRouter.currentMarker();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            ReplicaRouter.WriteMarker previous = ReplicaRouter.bindMarker(marker);
+            try {
+                result.complete(call(call));
+            }
+            catch (Throwable e) {
+                //mesmo embrulho do supplyAsync
+                result.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+            }
+            finally {
+                ReplicaRouter.bindMarker(previous);
+            }
+        });
+        return result;
+    }
+
+    //roda a chamada, esperando uma vaga quando o executor é de virtual threads
+    private <T> T call(Supplier<T> call) {
+        if (permits == null) {
+            return call.get();
+        }
+        try {
+            permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while waiting for a database slot");
+        }
+        try {
+            return call.get();
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    //mesmo que o submit acima, para chamadas sem retorno
+    public CompletableFuture<Void> run(Runnable call) {
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor() só existe a partir do Java 21, por isso a busca por reflexão
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+escolhe o pool de cada operação: escritas vão sempre para o primário e leituras para uma das réplicas, em rodízio
+(ROUND_ROBIN) ou para a que tem menos conexões emprestadas (LEAST_LOADED).
+
+Depois de uma escrita, as leituras de quem escreveu continuam indo para o primário por stickyMillis, para quem acabou
+de gravar ler o próprio dado mesmo que a réplica ainda não tenha recebido a alteração. O momento da escrita fica em um
+WriteMarker da thread, que o DbExecutor passa para as chamadas que roda em outras threads (DAOs assíncronos, scatter
+dos shards, leitura paralela): a escrita feita em uma delas vale para as leituras seguintes de quem a disparou. Quem
+delega trabalho a outro executor precisa fazer o mesmo com currentMarker/bindMarker. Leituras dentro de um
+DB.inTransaction usam a conexão da transação, que é do primário. Sem réplicas tudo vai para o primário.
+ */
+public class ReplicaRouter {
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    /*
+    momento (System.nanoTime) da última escrita de quem chamou; 0 = nenhuma. É o mesmo para todos os routers (uma
+    escrita em um shard também manda ao primário as leituras dos outros por stickyMillis), o que só erra para o lado
+    seguro.
+     */
+    public static final class WriteMarker {
+        private volatile long lastWrite;
+    }
+
+    private static final ThreadLocal<WriteMarker> CURRENT_MARKER = ThreadLocal.withInitial(WriteMarker::new);
+
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    private final Strategy strategy;
+    private final long stickyNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRouter(ConnectionPool primary, List<ConnectionPool> replicas, Strategy strategy, long stickyMillis) {
+        if (primary == null) {
+            throw new IllegalArgumentException("Primary pool cannot be null.");
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy cannot be null.");
+        }
+        if (stickyMillis < 0) {
+            throw new IllegalArgumentException("Sticky time cannot be negative.");
+        }
+        this.primary = primary;
+        this.replicas = replicas != null ? Collections.unmodifiableList(new ArrayList<>(replicas))
+                : Collections.<ConnectionPool>emptyList();
+        this.strategy = strategy;
+        this.stickyNanos = stickyMillis * 1_000_000L;
+    }
+
+    //router sem réplicas: leituras e escritas no primário
+    public ReplicaRouter(ConnectionPool primary) {
+        this(primary, null, Strategy.ROUND_ROBIN, 0);
+    }
+
+    /*
+    monta as réplicas a partir do db.properties: replica.urls (separadas por vírgula, com o mesmo usuário, senha
+    e configurações de pool do primário), replica.strategy (roundRobin ou leastLoaded) e replica.stickyMillis.
+     */
+    public static ReplicaRouter fromProperties(ConnectionPool primary, Properties props) {
+        List<ConnectionPool> replicas = new ArrayList<>();
+        String urls = props.getProperty("replica.urls", "");
+        try {
+            for (String url : urls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    replicas.add(ConnectionPool.fromProperties(props, url.trim()));
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            for (ConnectionPool replica : replicas) {
+                replica.close();
+            }
+            throw e;
+        }
+        Strategy strategy = "leastLoaded".equalsIgnoreCase(props.getProperty("replica.strategy", "roundRobin"))
+                ? Strategy.LEAST_LOADED : Strategy.ROUND_ROBIN;
+        return new ReplicaRouter(primary, replicas, strategy,
+                Long.parseLong(props.getProperty("replica.stickyMillis", "1000")));
+    }
+
+    public ConnectionPool getPrimary() {
+        return primary;
+    }
+
+    public List<ConnectionPool> getReplicas() {
+        return replicas;
+    }
+
+    //pool para uma leitura feita pela thread atual
+    public ConnectionPool forRead() {
+        if (replicas.isEmpty() || isSticky()) {
+            return primary;
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            ConnectionPool best = null;
+            int bestLoad = Integer.MAX_VALUE;
+            //começa em uma réplica diferente a cada chamada para desempatar sem favorecer a primeira
+            int start = next.getAndIncrement();
+            for (int i = 0; i < replicas.size(); i++) {
+                ConnectionPool replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+                int load = replica.getActiveConnections();
+                if (load < bestLoad) {
+                    best = replica;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+    //registra que a thread atual acabou de escrever no primário
+    public void markWrite() {
+        if (!replicas.isEmpty()) {
+            CURRENT_MARKER.get().lastWrite = System.nanoTime();
+        }
+    }
+
+    //true enquanto as leituras da thread atual precisam ir ao primário por causa de uma escrita recente
+    public boolean isSticky() {
+        long last = CURRENT_MARKER.get().lastWrite;
+        return last != 0 && System.nanoTime() - last < stickyNanos;
+    }
+
+    //marcador de escritas da thread atual, para ser passado ao bindMarker na thread que vai continuar o trabalho
+    public static WriteMarker currentMarker() {
+        return CURRENT_MARKER.get();
+    }
+
+    //faz a thread atual usar o marcador informado e devolve o anterior, que deve ser restaurado ao terminar
+    public static WriteMarker bindMarker(WriteMarker marker) {
+        if (marker == null) {
+            throw new IllegalArgumentException("Write marker cannot be null.");
+        }
+        WriteMarker previous = CURRENT_MARKER.get();
+        CURRENT_MARKER.set(marker);
+        return previous;
+    }
+
+    //fecha os pools das réplicas; o primário pertence ao DB
+    public void closeReplicas() {
+        for (ConnectionPool replica : replicas) {
+            replica.close();
+        }
+    }
+}
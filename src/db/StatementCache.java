@@ -0,0 +1,164 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+cache de PreparedStatements de uma conexão física do pool, pela chave SQL + flag de chaves geradas.
+Quando o DAO fecha o statement ele não é fechado de verdade: os parâmetros são limpos e ele volta para o cache,
+assim a próxima chamada com o mesmo SQL não paga o prepare de novo. Guarda no máximo maxSize statements (LRU).
+
+Só é usado por uma thread por vez, a que pegou a conexão emprestada do pool.
+ */
+final class StatementCache {
+    private final Connection physical;
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /*
+    retorna o statement do cache para esse SQL ou prepara um novo. Se o do cache ainda estiver em uso
+    (ex.: um stream aberto com o mesmo SQL), devolve um statement comum, fora do cache.
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cs = statements.get(key);
+        if (cs == null) {
+            cs = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cs);
+        }
+        else if (cs.inUse) {
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return cs.lease();
+    }
+
+    //chamado quando a conexão volta ao pool: statements que ficaram abertos são fechados e saem do cache
+    void releaseAll() {
+        for (Map.Entry<String, CachedStatement> e : new ArrayList<>(statements.entrySet())) {
+            if (e.getValue().inUse) {
+                statements.remove(e.getKey());
+                e.getValue().forceClose();
+            }
+        }
+    }
+
+    //chamado quando a conexão física é fechada
+    void close() {
+        for (CachedStatement cs : statements.values()) {
+            cs.forceClose();
+        }
+        statements.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private static final class CachedStatement {
+        final PreparedStatement physical;
+        boolean inUse = false;
+        boolean evicted = false;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement lease() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new LeaseHandler(this));
+        }
+
+        //devolve o statement ao cache, ou fecha de vez se ele já saiu do cache
+        void giveBack() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                physical.close();
+            }
+            else {
+                physical.clearParameters();
+                physical.clearBatch();
+            }
+        }
+
+        //tira o statement do cache, fechando agora se ninguém estiver usando (senão fecha no giveBack)
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                forceClose();
+            }
+        }
+
+        void forceClose() {
+            evicted = true;
+            try {
+                physical.close();
+            }
+            catch (SQLException e) {
+                //statement já está sendo descartado, não há o que fazer
+            }
+        }
+    }
+
+    private static final class LeaseHandler implements InvocationHandler {
+        private final CachedStatement cs;
+        private boolean returned = false;
+
+        LeaseHandler(CachedStatement cs) {
+            this.cs = cs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!returned) {
+                    returned = true;
+                    cs.giveBack();
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return returned || cs.physical.isClosed();
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (returned) {
+                throw new SQLException("Statement has already been closed.");
+            }
+            try {
+                return method.invoke(cs.physical, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+transação aberta pelo DB.inTransaction e ligada à thread atual. Os DAOs recebem a conexão dela por proxy:
+setAutoCommit, commit e close viram operações vazias, e rollback só marca a transação para ser desfeita no final.
+Assim cada método do DAO continua igual, mas todos participam de um único commit feito pelo inTransaction.
+ */
+final class TransactionScope {
+    private static final ThreadLocal<TransactionScope> CURRENT = new ThreadLocal<>();
+
+    private final Connection physical;
+    private final Connection shared;
+    private boolean rollbackOnly = false;
+    //executados depois do commit ou rollback, na ordem em que foram registrados
+    private final List<Runnable> afterCompletion = new ArrayList<>();
+
+    private TransactionScope(Connection physical) {
+        this.physical = physical;
+        this.shared = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handler());
+    }
+
+    static TransactionScope current() {
+        return CURRENT.get();
+    }
+
+    //abre a transação na conexão informada e liga à thread atual
+    static TransactionScope begin(Connection physical) throws SQLException {
+        physical.setAutoCommit(false);
+        TransactionScope scope = new TransactionScope(physical);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    //conexão entregue aos DAOs enquanto a transação estiver aberta
+    Connection connection() {
+        return shared;
+    }
+
+    boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    void afterCompletion(Runnable callback) {
+        afterCompletion.add(callback);
+    }
+
+    /*
+    executa os callbacks registrados, depois do end. Todos são executados mesmo que algum falhe, e a primeira
+    falha é lançada no final.
+     */
+    void runAfterCompletion() {
+        RuntimeException failure = null;
+        for (Runnable callback : afterCompletion) {
+            try {
+                callback.run();
+            }
+            catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        afterCompletion.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    //confirma ou desfaz a transação e desliga da thread; a conexão física é devolvida por quem abriu
+    void end(boolean commit) throws SQLException {
+        CURRENT.remove();
+        try {
+            if (commit && !rollbackOnly) {
+                physical.commit();
+            }
+            else {
+                physical.rollback();
+            }
+        }
+        finally {
+            physical.setAutoCommit(true);
+        }
+    }
+
+    private final class Handler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "setAutoCommit":
+                case "commit":
+                case "close":
+                    return null;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                case "getAutoCommit":
+                    return false;
+                case "isClosed":
+                    return physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(physical, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
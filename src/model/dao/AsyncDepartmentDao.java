@@ -0,0 +1,35 @@
+package model.dao;
+
+import model.entities.Department;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+//versão assíncrona do DepartmentDao: cada método roda fora da thread de quem chamou e devolve um CompletableFuture
+public interface AsyncDepartmentDao {
+    CompletableFuture<Void> insert(Department obj);
+
+    CompletableFuture<Void> insertAll(Collection<Department> list);
+
+    CompletableFuture<Void> insertAll(Collection<Department> list, int batchSize);
+
+    CompletableFuture<Void> update(Department obj);
+
+    CompletableFuture<UpsertResult> upsert(Department obj);
+
+    CompletableFuture<Void> upsertAll(Collection<Department> list);
+
+    CompletableFuture<Void> deleteById(Integer id);
+
+    CompletableFuture<Department> findById(Integer id);
+
+    CompletableFuture<Map<Integer, Department>> findByIds(Collection<Integer> ids);
+
+    CompletableFuture<List<Department>> findAll();
+
+    CompletableFuture<Page<Department>> findPage(PageCursor cursor, int limit);
+
+    CompletableFuture<Changes<Department>> findModifiedSince(ChangeToken since, int limit);
+}
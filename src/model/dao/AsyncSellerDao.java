@@ -0,0 +1,67 @@
+package model.dao;
+
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//versão assíncrona do SellerDao: cada método roda fora da thread de quem chamou e devolve um CompletableFuture
+public interface AsyncSellerDao {
+    CompletableFuture<Void> insert(Seller obj);
+
+    CompletableFuture<Void> insertAll(Collection<Seller> list);
+
+    CompletableFuture<Void> insertAll(Collection<Seller> list, int batchSize);
+
+    CompletableFuture<Void> update(Seller obj);
+
+    CompletableFuture<UpsertResult> upsert(Seller obj);
+
+    CompletableFuture<Void> upsertAll(Collection<Seller> list);
+
+    CompletableFuture<Void> updateAll(Collection<Seller> list);
+
+    CompletableFuture<Void> deleteById(Integer id);
+
+    CompletableFuture<Seller> findById(Integer id);
+
+    CompletableFuture<Map<Integer, Seller>> findByIds(Collection<Integer> ids);
+
+    CompletableFuture<List<Seller>> findAll();
+
+    CompletableFuture<List<Seller>> findAllParallel(int parallelism, boolean orderByName);
+
+    CompletableFuture<SellerTable> findAllAsTable();
+
+    CompletableFuture<Long> exportAll(ExportFormat format, Path file);
+
+    CompletableFuture<List<SalaryStats>> findSalaryStatsByDepartment();
+
+    CompletableFuture<List<SalaryStats>> findSalaryStatsByDepartment(Date birthFrom, Date birthTo);
+
+    CompletableFuture<List<Seller>> findByDepartment(Department department);
+
+    CompletableFuture<Page<Seller>> findPage(PageCursor cursor, int limit);
+
+    CompletableFuture<Page<Seller>> findPageByDepartment(Department department, PageCursor cursor, int limit);
+
+    //só a abertura do cursor é assíncrona; ler o Stream recebido bloqueia a thread que estiver lendo
+    CompletableFuture<Stream<Seller>> streamAll();
+
+    CompletableFuture<Stream<Seller>> streamByDepartment(Department department);
+
+    //a action é chamada na thread do executor, uma vez para cada seller
+    CompletableFuture<Void> forEach(Consumer<Seller> action);
+
+    //o future termina quando todas as threads do scan terminarem
+    CompletableFuture<Void> forEachParallel(int parallelism, Consumer<Seller> action);
+
+    CompletableFuture<Changes<Seller>> findModifiedSince(ChangeToken since, int limit);
+}
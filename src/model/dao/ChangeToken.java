@@ -0,0 +1,77 @@
+package model.dao;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/*
+posição no feed de alterações do findModifiedSince: a última versão de linha já entregue. Cada banco tem o seu
+contador de versões, então o token guarda uma versão por banco (uma só no DAO JDBC, uma por shard no
+ShardedSellerDao). O toString() devolve o token em texto ("120" ou "120,87"), para o consumidor guardar onde parou
+e continuar depois com parse.
+ */
+public final class ChangeToken implements Serializable {
+    private final long[] versions;
+
+    public ChangeToken(long... versions) {
+        if (versions == null || versions.length == 0) {
+            throw new IllegalArgumentException("Change token needs at least one version.");
+        }
+        for (long version : versions) {
+            if (version < 0) {
+                throw new IllegalArgumentException("Invalid change token version: " + version);
+            }
+        }
+        this.versions = versions.clone();
+    }
+
+    //lê o texto gerado pelo toString()
+    public static ChangeToken parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Change token cannot be null or empty.");
+        }
+        String[] parts = text.split(",");
+        long[] versions = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                versions[i] = Long.parseLong(parts[i].trim());
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid change token: " + text);
+        }
+        return new ChangeToken(versions);
+    }
+
+    //quantidade de versões (de bancos) no token
+    public int size() {
+        return versions.length;
+    }
+
+    public long getVersion(int index) {
+        return versions[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ChangeToken that = (ChangeToken) o;
+
+        return Arrays.equals(versions, that.versions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(versions);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (long version : versions) {
+            text.append(text.length() > 0 ? "," : "").append(version);
+        }
+        return text.toString();
+    }
+}
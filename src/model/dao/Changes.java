@@ -0,0 +1,54 @@
+package model.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+uma página do feed de alterações: as linhas inseridas ou alteradas (com os valores atuais), os ids apagados e o token
+para buscar a próxima página. Cada id aparece uma vez só, em changed ou em deletedIds.
+ */
+public class Changes<T> {
+    private final List<T> changed;
+    private final List<Integer> deletedIds;
+    private final ChangeToken nextToken;
+    private final boolean more;
+
+    public Changes(List<T> changed, List<Integer> deletedIds, ChangeToken nextToken, boolean more) {
+        this.changed = Collections.unmodifiableList(changed);
+        this.deletedIds = Collections.unmodifiableList(deletedIds);
+        this.nextToken = nextToken;
+        this.more = more;
+    }
+
+    public List<T> getChanged() {
+        return changed;
+    }
+
+    public List<Integer> getDeletedIds() {
+        return deletedIds;
+    }
+
+    //token para a próxima chamada; é o mesmo recebido quando não houve alteração
+    public ChangeToken getNextToken() {
+        return nextToken;
+    }
+
+    //true quando a página encheu e já existem mais alterações depois do nextToken
+    public boolean hasMore() {
+        return more;
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && deletedIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Changes{" +
+                "changed=" + changed +
+                ", deletedIds=" + deletedIds +
+                ", nextToken=" + nextToken +
+                ", more=" + more +
+                '}';
+    }
+}
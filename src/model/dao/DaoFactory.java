@@ -1,20 +1,200 @@
 package model.dao;
 
 import db.DB;
+import db.DbExecutor;
+import model.dao.impl.CachedDepartmentDao;
+import model.dao.impl.CachedSellerDao;
 import model.dao.impl.DepartmentDaoJDBC;
+import model.dao.impl.ExecutorDepartmentDao;
+import model.dao.impl.ExecutorSellerDao;
+import model.dao.impl.SellerBulkLoader;
 import model.dao.impl.SellerDaoJDBC;
+import model.dao.impl.ShardedSellerDao;
+import model.dao.impl.WriteBehindSellerDao;
+import model.dao.metrics.DaoMetrics;
+import model.dao.metrics.MeteredDepartmentDao;
+import model.dao.metrics.MeteredSellerDao;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
 
 //classe auxiliar responsável por instanciar os Daos
 public class DaoFactory {
+    private static volatile CachedDepartmentDao cachedDepartmentDao = null;
+    private static volatile CachedSellerDao cachedSellerDao = null;
+    private static volatile DaoMetrics metrics = null;
+    private static volatile DbExecutor executor = null;
+    private static volatile WriteBehindSellerDao writeBehindSellerDao = null;
+    private static volatile ShardedSellerDao shardedSellerDao = null;
+    private static volatile Set<String> changeFeedTables = null;
+
     /*
     método estático do tipo SellerDao(interface) para criar um objeto de acesso a dados que retorna
-    um novo objeto Seller já conectado ao BD. Por isso é obrigado a passar uma conexão como argumento.
+    um novo objeto Seller já conectado ao BD. O DAO recebe o router do DB e pega uma conexão emprestada a cada
+    operação (escritas no primário, leituras nas réplicas configuradas), assim várias threads podem usar o mesmo DAO
+    ao mesmo tempo.
      */
     public static SellerDao createSellerDao() {
-        return new SellerDaoJDBC(DB.getConnection());
+        SellerDaoJDBC dao = new SellerDaoJDBC(DB.getRouter());
+        dao.setRowVersions(isChangeFeedEnabled("seller"));
+        return dao;
     }
 
     public static DepartmentDao createDepartmentDao() {
-        return new DepartmentDaoJDBC(DB.getConnection());
+        DepartmentDaoJDBC dao = new DepartmentDaoJDBC(DB.getRouter());
+        dao.setRowVersions(isChangeFeedEnabled("department"));
+        return dao;
+    }
+
+    /*
+    se a tabela está no changeFeed.tables do db.properties (ex.: seller,department). Só as tabelas listadas numeram as
+    escritas para o findModifiedSince, pois isso faz as escritas nelas serem gravadas uma de cada vez.
+     */
+    public static boolean isChangeFeedEnabled(String table) {
+        if (changeFeedTables == null) {
+            Set<String> tables = new HashSet<>();
+            for (String name : DB.loadProperties().getProperty("changeFeed.tables", "").split(",")) {
+                if (!name.trim().isEmpty()) {
+                    tables.add(name.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            changeFeedTables = tables;
+        }
+        return changeFeedTables.contains(table.toLowerCase(Locale.ROOT));
+    }
+
+    /*
+    retorna o DepartmentDao com cache em memória. A instância é única no processo para que todos usem
+    o mesmo cache e as escritas feitas por ele invalidem o que os outros leem.
+     */
+    public static CachedDepartmentDao createCachedDepartmentDao() {
+        if (cachedDepartmentDao == null) {
+            synchronized (DaoFactory.class) {
+                if (cachedDepartmentDao == null) {
+                    cachedDepartmentDao = new CachedDepartmentDao(createDepartmentDao());
+                }
+            }
+        }
+        return cachedDepartmentDao;
+    }
+
+    /*
+    retorna o SellerDao com cache do findById, também único no processo. O tamanho máximo e o tempo de vida
+    das entradas vêm do db.properties (cache.seller.maxSize e cache.seller.ttlMillis).
+     */
+    public static CachedSellerDao createCachedSellerDao() {
+        if (cachedSellerDao == null) {
+            synchronized (DaoFactory.class) {
+                if (cachedSellerDao == null) {
+                    Properties props = DB.loadProperties();
+                    cachedSellerDao = new CachedSellerDao(createSellerDao(),
+                            Integer.parseInt(props.getProperty("cache.seller.maxSize", "10000")),
+                            Long.parseLong(props.getProperty("cache.seller.ttlMillis", "60000")));
+                }
+            }
+        }
+        return cachedSellerDao;
+    }
+
+    /*
+    retorna o SellerDao com escrita atrasada (write-behind), único no processo para que todos usem a mesma fila.
+    O tamanho da fila e o intervalo de gravação vêm do db.properties (writeBehind.seller.maxPending e
+    writeBehind.seller.flushIntervalMillis); o que estiver na fila é gravado também quando a JVM encerra.
+     */
+    public static WriteBehindSellerDao createWriteBehindSellerDao() {
+        if (writeBehindSellerDao == null) {
+            synchronized (DaoFactory.class) {
+                if (writeBehindSellerDao == null) {
+                    Properties props = DB.loadProperties();
+                    WriteBehindSellerDao dao = new WriteBehindSellerDao(createSellerDao(),
+                            Integer.parseInt(props.getProperty("writeBehind.seller.maxPending", "500")),
+                            Long.parseLong(props.getProperty("writeBehind.seller.flushIntervalMillis", "200")));
+                    dao.registerShutdownHook();
+                    writeBehindSellerDao = dao;
+                }
+            }
+        }
+        return writeBehindSellerDao;
+    }
+
+    /*
+    retorna o SellerDao dividido em shards pelo department, único no processo porque é dono dos pools dos shards.
+    Os bancos e o mapa department -> shard vêm do db.properties (shard.urls, shard.map e shard.idBlockSize).
+     */
+    public static ShardedSellerDao createShardedSellerDao() {
+        if (shardedSellerDao == null) {
+            synchronized (DaoFactory.class) {
+                if (shardedSellerDao == null) {
+                    ShardedSellerDao dao = ShardedSellerDao.fromProperties(DB.loadProperties());
+                    dao.setRowVersions(isChangeFeedEnabled("seller"));
+                    shardedSellerDao = dao;
+                }
+            }
+        }
+        return shardedSellerDao;
+    }
+
+    /*
+    carga de sellers a partir de CSV. As threads (bulkLoad.threads, limitadas ao pool.maxSize porque cada uma grava
+    com a sua conexão), o tamanho dos lotes (bulkLoad.batchSize) e o intervalo do andamento
+    (bulkLoad.progressIntervalMillis) vêm do db.properties.
+     */
+    public static SellerBulkLoader createSellerBulkLoader() {
+        Properties props = DB.loadProperties();
+        String configured = props.getProperty("bulkLoad.threads", "").trim();
+        int threads = configured.isEmpty() ? Runtime.getRuntime().availableProcessors()
+                : Integer.parseInt(configured);
+        return new SellerBulkLoader(createSellerDao(), createDepartmentDao(),
+                Math.min(threads, DB.getPool().getMaxSize()),
+                Integer.parseInt(props.getProperty("bulkLoad.batchSize", "1000")),
+                Long.parseLong(props.getProperty("bulkLoad.progressIntervalMillis", "1000")));
+    }
+
+    //métricas compartilhadas pelos DAOs medidos, registradas no JMX como model.dao:type=DaoMetrics
+    public static DaoMetrics getMetrics() {
+        if (metrics == null) {
+            synchronized (DaoFactory.class) {
+                if (metrics == null) {
+                    DaoMetrics m = new DaoMetrics();
+                    m.registerMBean();
+                    metrics = m;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    //SellerDao que grava latência, linhas e erros de cada chamada em getMetrics()
+    public static SellerDao createMeteredSellerDao() {
+        return new MeteredSellerDao(createSellerDao(), getMetrics());
+    }
+
+    //DepartmentDao que grava latência, linhas e erros de cada chamada em getMetrics()
+    public static DepartmentDao createMeteredDepartmentDao() {
+        return new MeteredDepartmentDao(createDepartmentDao(), getMetrics());
+    }
+
+    //executor das chamadas assíncronas, limitado ao tamanho máximo do pool de conexões do DB
+    public static DbExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (DaoFactory.class) {
+                if (executor == null) {
+                    executor = DbExecutor.forPool(DB.getPool());
+                }
+            }
+        }
+        return executor;
+    }
+
+    //SellerDao assíncrono: as chamadas rodam em virtual threads (Java 21+) limitadas pelo pool de conexões
+    public static AsyncSellerDao createAsyncSellerDao() {
+        return new ExecutorSellerDao(createSellerDao(), getExecutor());
+    }
+
+    //DepartmentDao assíncrono: as chamadas rodam em virtual threads (Java 21+) limitadas pelo pool de conexões
+    public static AsyncDepartmentDao createAsyncDepartmentDao() {
+        return new ExecutorDepartmentDao(createDepartmentDao(), getExecutor());
     }
 }
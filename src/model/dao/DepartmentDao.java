@@ -2,15 +2,32 @@ package model.dao;
 
 import model.entities.Department;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface DepartmentDao {
     //insere um objeto department
     void insert(Department obj);
 
+    //insere vários departments em lotes, atribuindo os ids gerados em cada objeto
+    void insertAll(Collection<Department> list);
+
+    //insere vários departments em lotes de batchSize linhas, com uma transação por lote
+    void insertAll(Collection<Department> list, int batchSize);
+
     //atualiza um objeto department
     void update(Department obj);
 
+    /*
+    insere o department ou, se já existir um com o mesmo id, atualiza ele, em uma única ida ao BD.
+    retorna se a linha foi inserida ou atualizada; o id gerado é atribuído no objeto.
+     */
+    UpsertResult upsert(Department obj);
+
+    //upsert de vários departments em lotes, atribuindo os ids gerados nos que foram inseridos
+    void upsertAll(Collection<Department> list);
+
     /*
     método responsável por pegar o id do parâmetro e DELETAR no BD um objeto com esse id, se existir retorna
     se não retorna null
@@ -23,6 +40,21 @@ public interface DepartmentDao {
      */
     Department findById(Integer id);
 
+    /*
+    busca vários departments de uma vez (em blocos de consultas IN), em vez de um findById por id.
+    retorna um map id -> objeto; ids que não existem ficam fora do map.
+     */
+    Map<Integer, Department> findByIds(Collection<Integer> ids);
+
     //retorna todos os departamentos em uma lista
     List<Department> findAll();
+
+    /*
+    retorna uma página de até limit departamentos ordenados por nome (e id), começando depois do cursor.
+    cursor null busca a primeira página; a próxima é buscada com o getNextCursor() da página recebida.
+     */
+    Page<Department> findPage(PageCursor cursor, int limit);
+
+    //feed de alterações dos departments, igual ao SellerDao.findModifiedSince
+    Changes<Department> findModifiedSince(ChangeToken since, int limit);
 }
@@ -0,0 +1,22 @@
+package model.dao;
+
+/*
+formatos do SellerDao.exportAll. As duas formas têm as mesmas colunas, na ordem:
+Id, Name, Email, BirthDate, BaseSalary, DepartmentId, DepartmentName.
+ */
+public enum ExportFormat {
+    /*
+    CSV em UTF-8 com uma linha de cabeçalho, separado por vírgula e com \n no fim de cada linha. Campos com vírgula,
+    aspas ou quebra de linha vão entre aspas (aspas dobradas dentro). BirthDate é yyyy-MM-dd e valores nulos ficam
+    vazios.
+     */
+    CSV,
+    /*
+    binário big-endian: o cabeçalho é "SELR" seguido da versão (int, hoje 1), depois um registro por seller, cada um
+    precedido do tamanho em bytes do resto do registro (int), para o leitor poder pular registros. Campos do registro:
+    Id (int), Name, Email (texto), BirthDate (int, dias desde 1970-01-01, Integer.MIN_VALUE se nula), BaseSalary
+    (double), DepartmentId (int), DepartmentName (texto). Texto é o tamanho em bytes (int, -1 para null) e os bytes
+    em UTF-8.
+     */
+    BINARY
+}
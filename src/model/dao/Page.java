@@ -0,0 +1,35 @@
+package model.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+//uma página de resultados e o cursor para buscar a próxima (null quando não há mais páginas)
+public class Page<T> {
+    private final List<T> items;
+    private final PageCursor nextCursor;
+
+    public Page(List<T> items, PageCursor nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public PageCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items +
+                ", nextCursor=" + nextCursor +
+                '}';
+    }
+}
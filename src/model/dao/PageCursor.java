@@ -0,0 +1,52 @@
+package model.dao;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/*
+posição de uma página na paginação por chave (keyset). Guarda o Name e o Id da última linha da página anterior,
+a próxima página começa logo depois desse par, sem usar OFFSET.
+ */
+public class PageCursor implements Serializable {
+    private final String name;
+    private final Integer id;
+
+    public PageCursor(String name, Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Cursor id cannot be null.");
+        }
+        this.name = name;
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PageCursor that = (PageCursor) o;
+
+        return Objects.equals(name, that.name) && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, id);
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor{" +
+                "name='" + name + '\'' +
+                ", id=" + id +
+                '}';
+    }
+}
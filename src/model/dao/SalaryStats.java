@@ -0,0 +1,83 @@
+package model.dao;
+
+import java.util.Collection;
+
+//quantidade e soma/média/mínimo/máximo dos salários de um grupo de sellers (um department, ou todos)
+public class SalaryStats {
+    //null quando as estatísticas são de todos os departments
+    private final Integer departmentId;
+    private final String departmentName;
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    public SalaryStats(Integer departmentId, String departmentName, long count, double sum, double min, double max) {
+        this.departmentId = departmentId;
+        this.departmentName = departmentName;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    //junta as estatísticas de vários departments em uma só, sem department
+    public static SalaryStats total(Collection<SalaryStats> list) {
+        long count = 0;
+        double sum = 0;
+        double min = 0;
+        double max = 0;
+        for (SalaryStats s : list) {
+            if (s.count == 0) {
+                continue;
+            }
+            min = count == 0 ? s.min : Math.min(min, s.min);
+            max = count == 0 ? s.max : Math.max(max, s.max);
+            count += s.count;
+            sum += s.sum;
+        }
+        return new SalaryStats(null, null, count, sum, min, max);
+    }
+
+    public Integer getDepartmentId() {
+        return departmentId;
+    }
+
+    public String getDepartmentName() {
+        return departmentName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    //média dos salários, ou 0 se não houver sellers
+    public double getAverage() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "SalaryStats{" +
+                "departmentId=" + departmentId +
+                ", departmentName='" + departmentName + '\'' +
+                ", count=" + count +
+                ", sum=" + sum +
+                ", average=" + getAverage() +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -3,15 +3,39 @@ package model.dao;
 import model.entities.Department;
 import model.entities.Seller;
 
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface SellerDao {
     //insere um objeto seller
     void insert(Seller obj);
 
+    //insere vários sellers em lotes, atribuindo os ids gerados em cada objeto
+    void insertAll(Collection<Seller> list);
+
+    //insere vários sellers em lotes de batchSize linhas, com uma transação por lote
+    void insertAll(Collection<Seller> list, int batchSize);
+
     //atualiza um objeto seller
     void update(Seller obj);
 
+    //atualiza vários sellers em lotes (batch), com uma transação por lote
+    void updateAll(Collection<Seller> list);
+
+    /*
+    insere o seller ou, se já existir um com o mesmo id, atualiza ele, em uma única ida ao BD.
+    retorna se a linha foi inserida ou atualizada; o id gerado é atribuído no objeto.
+     */
+    UpsertResult upsert(Seller obj);
+
+    //upsert de vários sellers em lotes, atribuindo os ids gerados nos que foram inseridos
+    void upsertAll(Collection<Seller> list);
+
     /*
     método responsável por pegar o id do parâmetro e DELETAR no BD um objeto com esse id, se existir retorna
     se não retorna null
@@ -24,9 +48,77 @@ public interface SellerDao {
      */
     Seller findById(Integer id);
 
+    /*
+    busca vários sellers de uma vez (em blocos de consultas IN), em vez de um findById por id.
+    retorna um map id -> objeto; ids que não existem ficam fora do map.
+     */
+    Map<Integer, Seller> findByIds(Collection<Integer> ids);
+
     //retorna todos os departamentos em uma lista
     List<Seller> findAll();
 
+    /*
+    lê todos os sellers dividindo os ids em faixas consultadas ao mesmo tempo, em até parallelism conexões do pool.
+    A lista sai em ordem de id ou, com orderByName, ordenada em memória por nome e, no empate, por id.
+     */
+    List<Seller> findAllParallel(int parallelism, boolean orderByName);
+
+    /*
+    retorna todos os sellers ordenados por id em uma SellerTable, guardados por coluna em arrays primitivos,
+    para relatórios sobre muitas linhas sem criar um objeto Seller por linha.
+     */
+    SellerTable findAllAsTable();
+
+    /*
+    exporta todos os sellers com o nome do department, em ordem de id, para o arquivo no formato informado.
+    As linhas vão do cursor do BD direto para o arquivo, com memória constante para qualquer tamanho de tabela.
+    O arquivo só é substituído quando o export termina. Retorna a quantidade de linhas exportadas.
+     */
+    long exportAll(ExportFormat format, Path file);
+
+    //quantidade e soma/média/mínimo/máximo dos salários de cada department, calculados pelo BD
+    List<SalaryStats> findSalaryStatsByDepartment();
+
+    /*
+    mesmo que o findSalaryStatsByDepartment, mas só dos sellers nascidos entre birthFrom e birthTo (inclusive).
+    null em qualquer um dos limites deixa aquele lado aberto.
+     */
+    List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo);
+
     //método para retornar uma lista de sellers sendo buscados por department
     List<Seller> findByDepartment(Department department);
+
+    /*
+    retorna uma página de até limit sellers ordenados por nome (e id), começando depois do cursor.
+    cursor null busca a primeira página; a próxima é buscada com o getNextCursor() da página recebida.
+     */
+    Page<Seller> findPage(PageCursor cursor, int limit);
+
+    //mesmo que o findPage, mas apenas os sellers do department informado
+    Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit);
+
+    /*
+    retorna todos os sellers ordenados por nome como um Stream lido direto do cursor do BD, sem carregar a tabela
+    inteira na memória. O Stream precisa ser fechado (try-with-resources) para liberar a conexão.
+     */
+    Stream<Seller> streamAll();
+
+    //mesmo que o streamAll, mas apenas os sellers do department informado
+    Stream<Seller> streamByDepartment(Department department);
+
+    //percorre todos os sellers ordenados por nome, entregando um por vez para a action
+    void forEach(Consumer<Seller> action);
+
+    /*
+    percorre todos os sellers com o mesmo scan em faixas do findAllParallel, sem ordem e sem montar a lista.
+    A action é chamada por até parallelism threads ao mesmo tempo e precisa ser thread-safe.
+     */
+    void forEachParallel(int parallelism, Consumer<Seller> action);
+
+    /*
+    feed de alterações: até limit sellers inseridos ou alterados e ids apagados depois do token, para caches e
+    índices se atualizarem sem reler a tabela. since null começa do início; a próxima chamada usa o
+    getNextToken() da página recebida.
+     */
+    Changes<Seller> findModifiedSince(ChangeToken since, int limit);
 }
@@ -0,0 +1,373 @@
+package model.dao;
+
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.DoubleStream;
+
+/*
+sellers guardados por coluna, para relatórios sobre muitas linhas. Em vez de um objeto Seller por linha, cada coluna
+é um array: ids, ids de department e salários em arrays primitivos, a data de nascimento em dias desde 1970-01-01
+e nome/email em UTF-8 dentro de um único byte[] por coluna. O nome de cada department é guardado uma vez só.
+
+A tabela não muda depois de montada pelo Builder. As agregações percorrem só o array da coluna usada.
+ */
+public class SellerTable implements Iterable<SellerTable.Row> {
+    //valor de getBirthEpochDay quando a data de nascimento é nula
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final int size;
+    private final int[] ids;
+    private final int[] departmentIds;
+    private final double[] salaries;
+    private final int[] birthEpochDays;
+    private final StringColumn names;
+    private final StringColumn emails;
+    private final Map<Integer, String> departmentNames;
+
+    private SellerTable(Builder b) {
+        this.size = b.size;
+        this.ids = Arrays.copyOf(b.ids, b.size);
+        this.departmentIds = Arrays.copyOf(b.departmentIds, b.size);
+        this.salaries = Arrays.copyOf(b.salaries, b.size);
+        this.birthEpochDays = Arrays.copyOf(b.birthEpochDays, b.size);
+        this.names = b.names.trim();
+        this.emails = b.emails.trim();
+        this.departmentNames = Collections.unmodifiableMap(new HashMap<>(b.departmentNames));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        checkRow(row);
+        return names.get(row);
+    }
+
+    public String getEmail(int row) {
+        checkRow(row);
+        return emails.get(row);
+    }
+
+    //dias desde 1970-01-01, ou NO_DATE
+    public int getBirthEpochDay(int row) {
+        checkRow(row);
+        return birthEpochDays[row];
+    }
+
+    public LocalDate getBirthDate(int row) {
+        int day = getBirthEpochDay(row);
+        return day != NO_DATE ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    public double getBaseSalary(int row) {
+        checkRow(row);
+        return salaries[row];
+    }
+
+    public int getDepartmentId(int row) {
+        checkRow(row);
+        return departmentIds[row];
+    }
+
+    public String getDepartmentName(int departmentId) {
+        return departmentNames.get(departmentId);
+    }
+
+    //monta um Seller com os dados da linha, para quando o relatório precisar do objeto
+    public Seller toSeller(int row) {
+        LocalDate birthDate = getBirthDate(row);
+        int depId = getDepartmentId(row);
+        return new Seller(getId(row), getName(row), getEmail(row),
+                birthDate != null ? java.sql.Date.valueOf(birthDate) : null, getBaseSalary(row),
+                new Department(depId, getDepartmentName(depId)));
+    }
+
+    //salários de todas as linhas, sem cópia
+    public DoubleStream salaries() {
+        return Arrays.stream(salaries, 0, size);
+    }
+
+    public double totalSalary() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += salaries[i];
+        }
+        return total;
+    }
+
+    //média dos salários, ou 0 se a tabela estiver vazia
+    public double averageSalary() {
+        return size > 0 ? totalSalary() / size : 0;
+    }
+
+    //maior salário, ou 0 se a tabela estiver vazia
+    public double maxSalary() {
+        if (size == 0) {
+            return 0;
+        }
+        double max = salaries[0];
+        for (int i = 1; i < size; i++) {
+            max = Math.max(max, salaries[i]);
+        }
+        return max;
+    }
+
+    //menor salário, ou 0 se a tabela estiver vazia
+    public double minSalary() {
+        if (size == 0) {
+            return 0;
+        }
+        double min = salaries[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, salaries[i]);
+        }
+        return min;
+    }
+
+    //quantidade de sellers por id de department
+    public Map<Integer, Integer> countByDepartment() {
+        Map<Integer, Integer> result = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            result.merge(departmentIds[i], 1, Integer::sum);
+        }
+        return result;
+    }
+
+    //soma dos salários por id de department
+    public Map<Integer, Double> totalSalaryByDepartment() {
+        //acumula em arrays pelo índice do department para não criar um Double por linha
+        Map<Integer, Integer> index = new HashMap<>();
+        double[] totals = new double[departmentNames.size() + 1];
+        for (int i = 0; i < size; i++) {
+            Integer slot = index.get(departmentIds[i]);
+            if (slot == null) {
+                slot = index.size();
+                index.put(departmentIds[i], slot);
+                if (slot == totals.length) {
+                    totals = Arrays.copyOf(totals, totals.length * 2);
+                }
+            }
+            totals[slot] += salaries[i];
+        }
+        Map<Integer, Double> result = new HashMap<>();
+        for (Map.Entry<Integer, Integer> e : index.entrySet()) {
+            result.put(e.getKey(), totals[e.getValue()]);
+        }
+        return result;
+    }
+
+    //percorre as linhas em ordem; cada Row lê as colunas da tabela sob demanda
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Row next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new Row(next++);
+            }
+        };
+    }
+
+    //estimativa dos bytes ocupados pelos arrays da tabela
+    public long estimatedBytes() {
+        return (long) size * (4 + 4 + 8 + 4) + names.estimatedBytes() + emails.estimatedBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "SellerTable{" +
+                "size=" + size +
+                ", departments=" + departmentNames.size() +
+                ", estimatedBytes=" + estimatedBytes() +
+                '}';
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    //uma linha da tabela, sem copiar os dados
+    public final class Row {
+        private final int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        public int getIndex() {
+            return row;
+        }
+
+        public int getId() {
+            return ids[row];
+        }
+
+        public String getName() {
+            return names.get(row);
+        }
+
+        public String getEmail() {
+            return emails.get(row);
+        }
+
+        public LocalDate getBirthDate() {
+            return SellerTable.this.getBirthDate(row);
+        }
+
+        public double getBaseSalary() {
+            return salaries[row];
+        }
+
+        public int getDepartmentId() {
+            return departmentIds[row];
+        }
+
+        public String getDepartmentName() {
+            return departmentNames.get(departmentIds[row]);
+        }
+
+        public Seller toSeller() {
+            return SellerTable.this.toSeller(row);
+        }
+    }
+
+    //monta a tabela linha a linha, crescendo os arrays conforme necessário
+    public static class Builder {
+        private int size = 0;
+        private int[] ids;
+        private int[] departmentIds;
+        private double[] salaries;
+        private int[] birthEpochDays;
+        private final StringColumn names;
+        private final StringColumn emails;
+        private final Map<Integer, String> departmentNames = new HashMap<>();
+
+        public Builder() {
+            this(1024);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            ids = new int[capacity];
+            departmentIds = new int[capacity];
+            salaries = new double[capacity];
+            birthEpochDays = new int[capacity];
+            names = new StringColumn(capacity, 16);
+            emails = new StringColumn(capacity, 24);
+        }
+
+        //birthEpochDay em dias desde 1970-01-01, ou NO_DATE
+        public Builder add(int id, String name, String email, int birthEpochDay, double baseSalary,
+                           int departmentId, String departmentName) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                departmentIds = Arrays.copyOf(departmentIds, capacity);
+                salaries = Arrays.copyOf(salaries, capacity);
+                birthEpochDays = Arrays.copyOf(birthEpochDays, capacity);
+            }
+            ids[size] = id;
+            departmentIds[size] = departmentId;
+            salaries[size] = baseSalary;
+            birthEpochDays[size] = birthEpochDay;
+            names.add(name);
+            emails.add(email);
+            if (!departmentNames.containsKey(departmentId)) {
+                departmentNames.put(departmentId, departmentName);
+            }
+            size++;
+            return this;
+        }
+
+        public SellerTable build() {
+            return new SellerTable(this);
+        }
+    }
+
+    //strings de uma coluna concatenadas em UTF-8; offsets[i] é o início da string i e offsets[i + 1] o fim
+    private static final class StringColumn {
+        private byte[] bytes;
+        private int[] offsets;
+        private int count = 0;
+        //linhas com valor nulo (raras, então guardadas à parte)
+        private BitSet nulls = null;
+
+        StringColumn(int capacity, int bytesPerValue) {
+            bytes = new byte[capacity * bytesPerValue];
+            offsets = new int[capacity + 1];
+        }
+
+        private StringColumn(byte[] bytes, int[] offsets, int count, BitSet nulls) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.count = count;
+            this.nulls = nulls;
+        }
+
+        void add(String value) {
+            if (count + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+            }
+            int end = offsets[count];
+            if (value == null) {
+                if (nulls == null) {
+                    nulls = new BitSet();
+                }
+                nulls.set(count);
+            }
+            else {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                if (end + encoded.length > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(end + encoded.length, bytes.length + (bytes.length >> 1)));
+                }
+                System.arraycopy(encoded, 0, bytes, end, encoded.length);
+                end += encoded.length;
+            }
+            offsets[++count] = end;
+        }
+
+        String get(int i) {
+            if (nulls != null && nulls.get(i)) {
+                return null;
+            }
+            return new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+
+        //cópia sem a folga dos arrays, usada pela tabela pronta
+        StringColumn trim() {
+            return new StringColumn(Arrays.copyOf(bytes, offsets[count]), Arrays.copyOf(offsets, count + 1), count,
+                    nulls != null ? (BitSet) nulls.clone() : null);
+        }
+
+        long estimatedBytes() {
+            return bytes.length + 4L * offsets.length;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package model.dao;
+
+//o que o upsert fez com a linha
+public enum UpsertResult {
+    //a linha não existia e foi inserida
+    INSERTED,
+    //a linha já existia e teve as colunas atualizadas (mesmo que para os mesmos valores)
+    UPDATED
+}
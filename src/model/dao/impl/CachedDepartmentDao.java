@@ -0,0 +1,280 @@
+package model.dao.impl;
+
+import db.DB;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.DepartmentDao;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.UpsertResult;
+import model.entities.Department;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+DepartmentDao que guarda em memória os resultados do findById e do findAll e só vai ao BD (pelo DAO de dentro)
+quando não tem o dado. Qualquer escrita invalida o cache inteiro: departamentos mudam pouco e são poucos.
+
+Cada entrada guarda a versão do cache de quando foi lida; a versão sobe depois de cada escrita, então uma leitura
+que começou antes de uma escrita nunca é servida depois dela. As leituras não usam lock.
+Leituras feitas dentro de um DB.inTransaction vão direto ao DAO: enxergam as escritas ainda não confirmadas da própria
+transação e não são guardadas. Escritas dentro da transação invalidam na hora e de novo depois do commit
+(DB.afterCompletion), para descartar o que outra thread tenha lido e guardado antes das escritas ficarem visíveis.
+ */
+public class CachedDepartmentDao implements DepartmentDao {
+    private final DepartmentDao dao;
+
+    private final ConcurrentHashMap<Integer, Entry<Department>> byId = new ConcurrentHashMap<>();
+    private volatile Entry<List<Department>> all = null;
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachedDepartmentDao(DepartmentDao dao) {
+        if (dao == null) {
+            throw new IllegalArgumentException("Department dao cannot be null.");
+        }
+        this.dao = dao;
+    }
+
+    @Override
+    public void insert(Department obj) {
+        try {
+            dao.insert(obj);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<Department> list) {
+        try {
+            dao.insertAll(list);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<Department> list, int batchSize) {
+        try {
+            dao.insertAll(list, batchSize);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void update(Department obj) {
+        try {
+            dao.update(obj);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public UpsertResult upsert(Department obj) {
+        try {
+            return dao.upsert(obj);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void upsertAll(Collection<Department> list) {
+        try {
+            dao.upsertAll(list);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        try {
+            dao.deleteById(id);
+        }
+        finally {
+            invalidate();
+        }
+    }
+
+    //retorna uma cópia do Department guardado, para quem chamou não alterar o objeto do cache
+    @Override
+    public Department findById(Integer id) {
+        if (DB.currentTransaction() != null) {
+            return dao.findById(id);
+        }
+        Entry<Department> entry = id != null ? byId.get(id) : null;
+        if (entry != null && entry.version == version.get()) {
+            hits.increment();
+            return copy(entry.value);
+        }
+        misses.increment();
+        long v = version.get();
+        Department obj = dao.findById(id);
+        if (obj != null) {
+            byId.put(id, new Entry<>(copy(obj), v));
+        }
+        return obj;
+    }
+
+    //ids encontrados no cache são servidos da memória; os que faltam são buscados juntos com o findByIds do DAO
+    @Override
+    public Map<Integer, Department> findByIds(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Id list cannot be null.");
+        }
+        if (DB.currentTransaction() != null) {
+            return dao.findByIds(ids);
+        }
+        long v = version.get();
+        Map<Integer, Department> cached = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            if (cached.containsKey(id)) {
+                continue;
+            }
+            //id inválido segue para o DAO, que faz a validação
+            Entry<Department> entry = id != null ? byId.get(id) : null;
+            if (entry != null && entry.version == v) {
+                cached.put(id, copy(entry.value));
+            }
+            else {
+                missing.add(id);
+            }
+        }
+        hits.add(cached.size());
+        misses.add(missing.size());
+        Map<Integer, Department> loaded = missing.isEmpty() ? new HashMap<>() : dao.findByIds(missing);
+        for (Department obj : loaded.values()) {
+            byId.put(obj.getId(), new Entry<>(copy(obj), v));
+        }
+        Map<Integer, Department> result = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            Department obj = cached.containsKey(id) ? cached.get(id) : loaded.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Department> findAll() {
+        if (DB.currentTransaction() != null) {
+            return dao.findAll();
+        }
+        Entry<List<Department>> entry = all;
+        if (entry != null && entry.version == version.get()) {
+            hits.increment();
+            return copyAll(entry.value);
+        }
+        misses.increment();
+        long v = version.get();
+        List<Department> list = dao.findAll();
+        List<Department> cached = copyAll(list);
+        all = new Entry<>(Collections.unmodifiableList(cached), v);
+        for (Department obj : cached) {
+            byId.put(obj.getId(), new Entry<>(obj, v));
+        }
+        return list;
+    }
+
+    //paginação não passa pelo cache
+    @Override
+    public Page<Department> findPage(PageCursor cursor, int limit) {
+        return dao.findPage(cursor, limit);
+    }
+
+    //o feed vem sempre do BD: é ele que diz o que mudou
+    @Override
+    public Changes<Department> findModifiedSince(ChangeToken since, int limit) {
+        return dao.findModifiedSince(since, limit);
+    }
+
+    /*
+    descarta tudo que está em memória, o próximo findById/findAll vai ao BD. Dentro de um DB.inTransaction descarta
+    de novo depois do commit ou rollback.
+     */
+    public void invalidate() {
+        evict();
+        if (DB.currentTransaction() != null) {
+            DB.afterCompletion(this::evict);
+        }
+    }
+
+    private void evict() {
+        version.incrementAndGet();
+        long dropped = byId.size() + (all != null ? 1 : 0);
+        byId.clear();
+        all = null;
+        evictions.add(dropped);
+    }
+
+    //quantas leituras foram atendidas pela memória
+    public long getHits() {
+        return hits.sum();
+    }
+
+    //quantas leituras precisaram ir ao BD
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    //quantas entradas foram descartadas por escritas
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedDepartmentDao{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    private static Department copy(Department obj) {
+        return new Department(obj.getId(), obj.getName());
+    }
+
+    private static List<Department> copyAll(List<Department> list) {
+        List<Department> copy = new ArrayList<>(list.size());
+        for (Department obj : list) {
+            copy.add(copy(obj));
+        }
+        return copy;
+    }
+
+    //valor guardado junto com a versão do cache de quando foi lido
+    private static final class Entry<T> {
+        final T value;
+        final long version;
+
+        Entry(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
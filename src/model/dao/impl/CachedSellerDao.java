@@ -0,0 +1,412 @@
+package model.dao.impl;
+
+import db.DB;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+SellerDao que guarda em memória os Sellers lidos pelo findById, com limite de tamanho (remove o usado há mais tempo,
+LRU) e tempo de vida opcional (ttlMillis, 0 = sem expiração). insert, update e deleteById removem o Seller do cache.
+
+O cache guarda e devolve cópias, assim quem chamou pode alterar o Seller recebido (ex.: setName antes do update)
+sem mudar o que está guardado. O nome do department vem junto do Seller e só é atualizado quando a entrada expira.
+Leituras feitas dentro de um DB.inTransaction vão direto ao DAO: enxergam as escritas ainda não confirmadas da própria
+transação e não são guardadas. Escritas dentro da transação removem o Seller na hora e de novo depois do commit
+(DB.afterCompletion), para descartar o que outra thread tenha lido e guardado antes das escritas ficarem visíveis.
+ */
+public class CachedSellerDao implements SellerDao {
+    private final SellerDao dao;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    //LinkedHashMap em ordem de acesso, protegido pelo próprio lock do objeto
+    private final LinkedHashMap<Integer, CachedSeller> cache;
+    //conta as escritas, para não guardar um Seller lido antes de uma escrita que terminou durante a leitura
+    private long writes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachedSellerDao(SellerDao dao, int maxSize, long ttlMillis) {
+        if (dao == null) {
+            throw new IllegalArgumentException("Seller dao cannot be null.");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero.");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache ttl cannot be negative.");
+        }
+        this.dao = dao;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.cache = new LinkedHashMap<Integer, CachedSeller>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedSeller> eldest) {
+                if (size() > CachedSellerDao.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void insert(Seller obj) {
+        try {
+            dao.insert(obj);
+        }
+        finally {
+            invalidate(obj != null ? obj.getId() : null);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Seller> list) {
+        try {
+            dao.updateAll(list);
+        }
+        finally {
+            invalidateAll(list);
+        }
+    }
+
+    @Override
+    public UpsertResult upsert(Seller obj) {
+        try {
+            return dao.upsert(obj);
+        }
+        finally {
+            invalidate(obj != null ? obj.getId() : null);
+        }
+    }
+
+    @Override
+    public void upsertAll(Collection<Seller> list) {
+        try {
+            dao.upsertAll(list);
+        }
+        finally {
+            invalidateAll(list);
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list) {
+        dao.insertAll(list);
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list, int batchSize) {
+        dao.insertAll(list, batchSize);
+    }
+
+    @Override
+    public void update(Seller obj) {
+        try {
+            dao.update(obj);
+        }
+        finally {
+            invalidate(obj != null ? obj.getId() : null);
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        try {
+            dao.deleteById(id);
+        }
+        finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Seller findById(Integer id) {
+        if (DB.currentTransaction() != null) {
+            return dao.findById(id);
+        }
+        if (id != null) {
+            synchronized (cache) {
+                CachedSeller entry = cache.get(id);
+                if (entry != null) {
+                    if (ttlMillis == 0 || System.currentTimeMillis() - entry.loadedAt < ttlMillis) {
+                        hits.increment();
+                        return copy(entry.seller);
+                    }
+                    //entrada expirada
+                    cache.remove(id);
+                    evictions.increment();
+                }
+            }
+        }
+        misses.increment();
+        long writesBefore;
+        synchronized (cache) {
+            writesBefore = writes;
+        }
+        Seller obj = dao.findById(id);
+        if (obj != null) {
+            CachedSeller entry = new CachedSeller(copy(obj), System.currentTimeMillis());
+            synchronized (cache) {
+                if (writes == writesBefore) {
+                    cache.put(id, entry);
+                }
+            }
+        }
+        return obj;
+    }
+
+    //ids encontrados no cache são servidos da memória; os que faltam são buscados juntos com o findByIds do DAO
+    @Override
+    public Map<Integer, Seller> findByIds(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Id list cannot be null.");
+        }
+        if (DB.currentTransaction() != null) {
+            return dao.findByIds(ids);
+        }
+        Map<Integer, Seller> cached = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long writesBefore;
+        synchronized (cache) {
+            writesBefore = writes;
+            for (Integer id : ids) {
+                if (cached.containsKey(id)) {
+                    continue;
+                }
+                //id inválido segue para o DAO, que faz a validação
+                CachedSeller entry = id != null ? cache.get(id) : null;
+                if (entry != null && (ttlMillis == 0 || now - entry.loadedAt < ttlMillis)) {
+                    cached.put(id, copy(entry.seller));
+                }
+                else {
+                    if (entry != null) {
+                        cache.remove(id);
+                        evictions.increment();
+                    }
+                    missing.add(id);
+                }
+            }
+        }
+        hits.add(cached.size());
+        misses.add(missing.size());
+        Map<Integer, Seller> loaded = missing.isEmpty() ? new HashMap<>() : dao.findByIds(missing);
+        if (!loaded.isEmpty()) {
+            synchronized (cache) {
+                if (writes == writesBefore) {
+                    for (Seller obj : loaded.values()) {
+                        cache.put(obj.getId(), new CachedSeller(copy(obj), now));
+                    }
+                }
+            }
+        }
+        Map<Integer, Seller> result = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            Seller obj = cached.containsKey(id) ? cached.get(id) : loaded.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Seller> findAll() {
+        return dao.findAll();
+    }
+
+    @Override
+    public List<Seller> findAllParallel(int parallelism, boolean orderByName) {
+        return dao.findAllParallel(parallelism, orderByName);
+    }
+
+    @Override
+    public SellerTable findAllAsTable() {
+        return dao.findAllAsTable();
+    }
+
+    @Override
+    public long exportAll(ExportFormat format, Path file) {
+        return dao.exportAll(format, file);
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment() {
+        return dao.findSalaryStatsByDepartment();
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        return dao.findSalaryStatsByDepartment(birthFrom, birthTo);
+    }
+
+    @Override
+    public List<Seller> findByDepartment(Department department) {
+        return dao.findByDepartment(department);
+    }
+
+    @Override
+    public Page<Seller> findPage(PageCursor cursor, int limit) {
+        return dao.findPage(cursor, limit);
+    }
+
+    @Override
+    public Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        return dao.findPageByDepartment(department, cursor, limit);
+    }
+
+    @Override
+    public Stream<Seller> streamAll() {
+        return dao.streamAll();
+    }
+
+    @Override
+    public Stream<Seller> streamByDepartment(Department department) {
+        return dao.streamByDepartment(department);
+    }
+
+    @Override
+    public void forEach(Consumer<Seller> action) {
+        dao.forEach(action);
+    }
+
+    @Override
+    public void forEachParallel(int parallelism, Consumer<Seller> action) {
+        dao.forEachParallel(parallelism, action);
+    }
+
+    //o feed vem sempre do BD: é ele que diz o que mudou
+    @Override
+    public Changes<Seller> findModifiedSince(ChangeToken since, int limit) {
+        return dao.findModifiedSince(since, limit);
+    }
+
+    /*
+    remove um Seller do cache, o próximo findById dele vai ao BD. Dentro de um DB.inTransaction remove de novo
+    depois do commit ou rollback.
+     */
+    public void invalidate(Integer id) {
+        invalidateIds(Collections.singletonList(id));
+    }
+
+    //remove do cache os Sellers da lista
+    private void invalidateAll(Collection<Seller> list) {
+        if (list != null) {
+            List<Integer> ids = new ArrayList<>(list.size());
+            for (Seller obj : list) {
+                ids.add(obj != null ? obj.getId() : null);
+            }
+            invalidateIds(ids);
+        }
+    }
+
+    private void invalidateIds(List<Integer> ids) {
+        evict(ids);
+        if (DB.currentTransaction() != null) {
+            DB.afterCompletion(() -> evict(ids));
+        }
+    }
+
+    private void evict(List<Integer> ids) {
+        synchronized (cache) {
+            writes++;
+            for (Integer id : ids) {
+                if (id != null && cache.remove(id) != null) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    //esvazia o cache
+    public void invalidateAll() {
+        synchronized (cache) {
+            writes++;
+            evictions.add(cache.size());
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    //quantas leituras foram atendidas pela memória
+    public long getHits() {
+        return hits.sum();
+    }
+
+    //quantas leituras precisaram ir ao BD
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    //quantas entradas saíram do cache por limite de tamanho, expiração ou escrita
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedSellerDao{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    //cópia do Seller e do seu Department, para o cache nunca compartilhar objetos com quem chamou
+    //a cópia de um Seller limpo (lido do BD) também sai limpa, para o update dela gravar só o que mudar
+    private static Seller copy(Seller obj) {
+        Department dep = obj.getDepartment();
+        Seller copy = new Seller(obj.getId(), obj.getName(), obj.getEmail(),
+                obj.getBirthDate() != null ? (Date) obj.getBirthDate().clone() : null,
+                obj.getBaseSalary(),
+                dep != null ? new Department(dep.getId(), dep.getName()) : null);
+        if (obj.getChangedFields().isEmpty()) {
+            copy.markClean();
+        }
+        return copy;
+    }
+
+    //Seller guardado junto com o momento em que foi lido do BD
+    private static final class CachedSeller {
+        final Seller seller;
+        final long loadedAt;
+
+        CachedSeller(Seller seller, long loadedAt) {
+            this.seller = seller;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
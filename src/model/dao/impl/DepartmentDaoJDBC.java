@@ -1,35 +1,141 @@
 package model.dao.impl;
 
+import db.ConnectionPool;
 import db.DB;
 import db.DbException;
+import db.ReplicaRouter;
+import model.dao.ChangeToken;
+import model.dao.Changes;
 import model.dao.DepartmentDao;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.UpsertResult;
 import model.entities.Department;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DepartmentDaoJDBC implements DepartmentDao {
-    private Connection conn;
+    private static final String INSERT_SQL = "INSERT INTO department (Name, RowVersion) Values (?, ?)";
+    //tamanho padrão dos lotes do insertAll
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    //conexão fixa (quando o DAO é criado com uma Connection) ou pool de onde cada operação pega uma conexão
+    private final Connection conn;
+    private final ConnectionPool pool;
+    //router das leituras para as réplicas (null = leituras no mesmo pool das escritas)
+    private final ReplicaRouter router;
+    //banco usado e o comando de upsert dele, definidos na primeira chamada ao upsert ou ao deleteById
+    private volatile SqlDialect dialect = null;
+    private volatile String upsertSql = null;
+    //se as escritas numeram as linhas para o findModifiedSince (desligado: não passam pelo contador row_version)
+    private volatile boolean rowVersions = false;
+
     //construtor com argumento tipo Connection para forçar injeção de dependência
     public DepartmentDaoJDBC(Connection conn) {
         this.conn = conn;
+        this.pool = null;
+        this.router = null;
+    }
+
+    //construtor com o pool de conexões: cada operação pega uma conexão emprestada e devolve ao terminar
+    public DepartmentDaoJDBC(ConnectionPool pool) {
+        this.conn = null;
+        this.pool = pool;
+        this.router = null;
+    }
+
+    //construtor com o router: escritas no pool primário e leituras nas réplicas dele
+    public DepartmentDaoJDBC(ReplicaRouter router) {
+        this.conn = null;
+        this.pool = router.getPrimary();
+        this.router = router;
+    }
+
+    /*
+    liga a numeração das linhas para o findModifiedSince. Cada escrita reserva versões no contador row_version, que
+    fica travado até o commit, então as escritas na tabela passam a ser gravadas uma de cada vez; por isso vem
+    desligada. Todos os DAOs que escrevem na tabela precisam estar com a mesma opção (a DaoFactory usa o
+    changeFeed.tables do db.properties), senão o feed perde as escritas dos que estiverem desligados.
+     */
+    public void setRowVersions(boolean rowVersions) {
+        this.rowVersions = rowVersions;
+    }
+
+    public boolean isRowVersions() {
+        return rowVersions;
+    }
+
+    //reserva count versões no contador da tabela; com a numeração desligada não vai ao BD e as linhas ficam com 0
+    private long reserveVersions(Connection conn, int count) throws SQLException {
+        return rowVersions ? RowVersions.reserve(conn, RowVersions.DEPARTMENT, count) : 0;
+    }
+
+    //o feed só enxerga escritas numeradas, então só pode ser lido com a numeração ligada
+    private void checkRowVersions() {
+        if (!rowVersions) {
+            throw new IllegalStateException("Row versions are disabled for department; add it to changeFeed.tables.");
+        }
+    }
+
+    /*
+    retorna a conexão que a escrita vai usar. Dentro de um DB.inTransaction é a conexão da transação, e os
+    commits/rollbacks feitos pelos métodos abaixo ficam para o final da transação.
+     */
+    private Connection acquireConnection() {
+        Connection tx = DB.currentTransaction();
+        if (tx != null) {
+            return tx;
+        }
+        return pool != null ? pool.borrow() : conn;
+    }
+
+    /*
+    devolve ao pool a conexão usada pela escrita (a conexão fixa e a da transação continuam abertas) e avisa o router,
+    para as próximas leituras da thread irem ao primário e enxergarem o que acabou de ser gravado.
+     */
+    private void releaseConnection(Connection c) {
+        releaseReadConnection(c);
+        if (router != null) {
+            router.markWrite();
+        }
+    }
+
+    //conexão das leituras: a da transação, se houver; senão uma réplica escolhida pelo router, se houver
+    private Connection acquireReadConnection() {
+        if (router != null && DB.currentTransaction() == null) {
+            return router.forRead().borrow();
+        }
+        return acquireConnection();
+    }
+
+    //devolve a conexão usada por uma leitura
+    private void releaseReadConnection(Connection c) {
+        if (pool != null && c != DB.currentTransaction()) {
+            DB.closeConnection(c);
+        }
     }
 
     //método para inserir um novo Department no Banco de dados
     @Override
     public void insert(Department obj) {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         PreparedStatement st = null;
         try {
             // Validação do nome do departamento
-            if (obj.getName() == null || obj.getName().trim().isEmpty()){
-                throw new IllegalArgumentException("Department name cannot be null or empty.");
-            }
+            validateDepartment(obj);
             // Inicia a transação
             conn.setAutoCommit(false);
-            st = conn.prepareStatement("INSERT INTO department (Name) Values (?)",
-                    Statement.RETURN_GENERATED_KEYS);
+            long version = reserveVersions(conn, 1);
+            st = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
             st.setString(1, obj.getName());
+            st.setLong(2, version);
 
             //variável recebendo a execução do comando SQL e contabilizando número de linhas afetadas
             int rowsAffected = st.executeUpdate();
@@ -60,31 +166,149 @@ public class DepartmentDaoJDBC implements DepartmentDao {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
         }
         finally {
             DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    //insere vários Departments usando lotes (batch) do tamanho padrão
+    @Override
+    public void insertAll(Collection<Department> list) {
+        insertAll(list, DEFAULT_BATCH_SIZE);
+    }
+
+    /*
+    insere vários Departments de uma vez. A validação é feita para todos antes de começar, depois as linhas são
+    enviadas em lotes de batchSize, com uma transação por lote, e os ids gerados são atribuídos de volta em cada objeto.
+    Se um lote falhar, só ele sofre rollback: os lotes anteriores já foram confirmados.
+     */
+    @Override
+    public void insertAll(Collection<Department> list, int batchSize) {
+        if (list == null) {
+            throw new IllegalArgumentException("Department list cannot be null.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        //validação de todos os Departments antes de qualquer ida ao BD
+        for (Department obj : list) {
+            validateDepartment(obj);
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        PreparedStatement st = null;
+        try {
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+
+            //Departments do lote atual, na mesma ordem em que foram adicionados ao batch
+            List<Department> chunk = new ArrayList<>(Math.min(batchSize, list.size()));
+            int remaining = list.size();
+            long version = 0;
+            for (Department obj : list) {
+                if (chunk.isEmpty()) {
+                    //as versões do lote são reservadas de uma vez, na transação do lote
+                    version = reserveVersions(conn, Math.min(batchSize, remaining));
+                }
+                remaining--;
+                st.setString(1, obj.getName());
+                st.setLong(2, rowVersions ? version++ : 0);
+                st.addBatch();
+                chunk.add(obj);
+                if (chunk.size() == batchSize) {
+                    executeInsertBatch(conn, st, chunk);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                executeInsertBatch(conn, st, chunk);
+            }
+            System.out.println("Departments inserted successfully! Rows = " + list.size());
+        }
+        catch (SQLException e) {
+            try {
+                //o rollback desfaz apenas o lote que estava em andamento
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    //executa o lote, atribui os ids gerados aos Departments do lote e confirma a transação
+    private void executeInsertBatch(Connection conn, PreparedStatement st, List<Department> chunk) throws SQLException {
+        st.executeBatch();
+        ResultSet rs = st.getGeneratedKeys();
+        try {
+            int i = 0;
+            while (rs.next() && i < chunk.size()) {
+                chunk.get(i++).setId(rs.getInt(1));
+            }
+            if (i < chunk.size()) {
+                throw new SQLException("Unexpected error! Expected " + chunk.size() + " generated keys, got " + i);
+            }
+        }
+        finally {
+            DB.closeResultSet(rs);
+        }
+        conn.commit();
+        chunk.clear();
+    }
+
+    /*
+    atualiza o Department compartilhado pelos Sellers (DepartmentIdentityMap) com o que foi gravado. Dentro de um
+    DB.inTransaction a gravação ainda pode ser desfeita, então ele só é atualizado na próxima leitura.
+     */
+    private static void refreshShared(Department obj) {
+        if (DB.currentTransaction() == null) {
+            DepartmentIdentityMap.SHARED.refresh(obj);
+        }
+    }
+
+    //validação dos dados de entrada de Department, usada no insert e no insertAll
+    private void validateDepartment(Department obj) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Department cannot be null.");
+        }
+        if (obj.getName() == null || obj.getName().trim().isEmpty()){
+            throw new IllegalArgumentException("Department name cannot be null or empty.");
         }
     }
 
     //método para atualizar os dados de um Department no Banco de dados
     @Override
     public void update(Department obj) {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         PreparedStatement st = null;
         try {
             conn.setAutoCommit(false);
+            long version = reserveVersions(conn, 1);
 
-            st = conn.prepareStatement("UPDATE department SET Name = ? WHERE Id = ?");
+            st = conn.prepareStatement("UPDATE department SET Name = ?, RowVersion = ? WHERE Id = ?");
             st.setString(1, obj.getName());
-            st.setInt(2, obj.getId());
+            st.setLong(2, version);
+            st.setInt(3, obj.getId());
             st.executeUpdate();
 
             //confirmação explicita para que as operações sejam executadas
             conn.commit();
+            refreshShared(obj);
             //retorno de sucesso na operação
             System.out.println("Update successful! " + obj);
         }
@@ -92,13 +316,172 @@ public class DepartmentDaoJDBC implements DepartmentDao {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    /*
+    insere o Department ou, se já existir uma linha com o id dele, atualiza essa linha, em uma única ida ao BD
+    (department sem id é sempre inserido). Retorna o que foi feito; o id gerado é atribuído no objeto.
+     */
+    @Override
+    public UpsertResult upsert(Department obj) {
+        validateDepartment(obj);
+        //sem id não há linha para atualizar
+        if (obj.getId() == null) {
+            insert(obj);
+            return UpsertResult.INSERTED;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        PreparedStatement st = null;
+        try {
+            conn.setAutoCommit(false);
+            SqlDialect dialect = dialect(conn);
+            //o H2 não informa se a linha existia: consulta antes, na mesma transação
+            boolean existed = dialect == SqlDialect.H2 && exists(conn, obj.getId());
+            long version = reserveVersions(conn, 1);
+            st = conn.prepareStatement(upsertSql, Statement.RETURN_GENERATED_KEYS);
+            bindUpsert(st, obj, version);
+            int rowsAffected = st.executeUpdate();
+            if (dialect == SqlDialect.MYSQL) {
+                //2 = linha existente alterada; com 1, só o insert devolve o id como chave gerada
+                existed = rowsAffected == 2;
+                if (!existed) {
+                    ResultSet rs = st.getGeneratedKeys();
+                    try {
+                        existed = !(rs.next() && rs.getInt(1) == obj.getId());
+                    }
+                    finally {
+                        DB.closeResultSet(rs);
+                    }
+                }
+            }
+            conn.commit();
+            refreshShared(obj);
+            UpsertResult result = existed ? UpsertResult.UPDATED : UpsertResult.INSERTED;
+            System.out.println("Department upserted successfully! Id = " + obj.getId() + " (" + result + ")");
+            return result;
+        }
+        catch (SQLException e) {
+            try {
+                //o rollback faz com que a transação volte caso tenha parado no meio.
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    /*
+    upsert de vários Departments: os que têm id vão em lotes de DEFAULT_BATCH_SIZE com o upsert do banco, uma transação
+    por lote, e os sem id são inseridos pelo insertAll, que atribui os ids gerados.
+     */
+    @Override
+    public void upsertAll(Collection<Department> list) {
+        if (list == null) {
+            throw new IllegalArgumentException("Department list cannot be null.");
+        }
+        List<Department> withId = new ArrayList<>();
+        List<Department> withoutId = new ArrayList<>();
+        for (Department obj : list) {
+            validateDepartment(obj);
+            (obj.getId() != null ? withId : withoutId).add(obj);
+        }
+        if (!withId.isEmpty()) {
+            //pega uma conexão emprestada do pool, devolvida no finally
+            Connection conn = acquireConnection();
+            PreparedStatement st = null;
+            try {
+                conn.setAutoCommit(false);
+                dialect(conn);
+                st = conn.prepareStatement(upsertSql);
+                int pending = 0;
+                int remaining = withId.size();
+                long version = 0;
+                for (Department obj : withId) {
+                    if (pending == 0) {
+                        version = reserveVersions(conn, Math.min(DEFAULT_BATCH_SIZE, remaining));
+                    }
+                    remaining--;
+                    bindUpsert(st, obj, rowVersions ? version++ : 0);
+                    st.addBatch();
+                    if (++pending == DEFAULT_BATCH_SIZE) {
+                        st.executeBatch();
+                        conn.commit();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    st.executeBatch();
+                    conn.commit();
+                }
+                for (Department obj : withId) {
+                    refreshShared(obj);
+                }
+            }
+            catch (SQLException e) {
+                try {
+                    //o rollback desfaz apenas o lote que estava em andamento
+                    conn.rollback();
+                    throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+                } catch (SQLException ex) {
+                    //em caso de erro no rollback
+                    throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+                }
+            }
+            finally {
+                DB.closeStatement(st);
+                releaseConnection(conn);
             }
         }
+        if (!withoutId.isEmpty()) {
+            insertAll(withoutId);
+        }
+        System.out.println("Departments upserted successfully! Rows = " + list.size());
+    }
+
+    //identifica o banco na primeira chamada e monta o comando de upsert dele
+    private SqlDialect dialect(Connection conn) throws SQLException {
+        SqlDialect d = dialect;
+        if (d == null) {
+            d = SqlDialect.of(conn);
+            upsertSql = d.upsert("department", "Id", "Name", "RowVersion");
+            dialect = d;
+        }
+        return d;
+    }
+
+    private void bindUpsert(PreparedStatement st, Department obj, long version) throws SQLException {
+        st.setInt(1, obj.getId());
+        st.setString(2, obj.getName());
+        st.setLong(3, version);
+    }
+
+    private boolean exists(Connection conn, int id) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("SELECT 1 FROM department WHERE Id = ? FOR UPDATE");
+        ResultSet rs = null;
+        try {
+            st.setInt(1, id);
+            rs = st.executeQuery();
+            return rs.next();
+        }
         finally {
+            DB.closeResultSet(rs);
             DB.closeStatement(st);
         }
     }
@@ -110,32 +493,48 @@ public class DepartmentDaoJDBC implements DepartmentDao {
         if (id == null || id <=0) {
             throw new DbException("Invalid Id: " + id);
         }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         PreparedStatement st = null;
         try {
             // Inicia a transação
             conn.setAutoCommit(false);
+            long version = reserveVersions(conn, 1);
             st = conn.prepareStatement("DELETE FROM department WHERE Id = ?");
             st.setInt(1, id);
             int rows = st.executeUpdate();
             if (rows == 0) {
+                //libera o contador de versões travado pelo reserve. Dentro de um DB.inTransaction a conexão não é
+                //do DAO: o rollback desfaria a transação inteira, e quem chamou pode tratar o erro e continuar
+                if (DB.currentTransaction() == null) {
+                    conn.rollback();
+                }
                 throw new DbException("Error! Id not found");
             }
+            //o id apagado entra no feed do findModifiedSince
+            if (rowVersions) {
+                RowVersions.tombstone(conn, dialect(conn), RowVersions.DEPARTMENT, id, version);
+            }
             //confirmação explicita para que as operações sejam executadas
             conn.commit();
+            if (DB.currentTransaction() == null) {
+                DepartmentIdentityMap.SHARED.remove(id);
+            }
             System.out.println("Department deleted sucessfully! Deleted Department ID = " + id);
         }
         catch (SQLException e) {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
         }
         finally {
             DB.closeStatement(st);
+            releaseConnection(conn);
         }
     }
 
@@ -146,6 +545,8 @@ public class DepartmentDaoJDBC implements DepartmentDao {
         if (id == null || id <=0) {
             throw new DbException("Invalid Id: " + id);
         }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         //armazena e manipula os resultados da consulta SQL feitas pelo PreparedStatement
@@ -158,6 +559,7 @@ public class DepartmentDaoJDBC implements DepartmentDao {
 
             //rs recebe o resultado da execução da consulta
             rs = st.executeQuery();
+            DepartmentRowMapper mapper = new DepartmentRowMapper(rs);
 
             /*
             o resultset traz resultados em forma de tabela, como usamos POO,
@@ -169,26 +571,78 @@ public class DepartmentDaoJDBC implements DepartmentDao {
              */
             if (rs.next()) {
                 //instanciando departamento
-                Department obj = new Department();
-                obj.setId(rs.getInt("Id"));
-                obj.setName(rs.getString("Name"));
+                Department obj = mapper.department(rs);
                 return obj;
             }
             return null;
         }
         catch (SQLException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
         }
         //fechamento dos recursos
         finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            releaseReadConnection(conn);
         }
     }
 
+    /*
+    busca vários Departments de uma vez, com consultas WHERE Id IN (...) de até IdChunks.MAX_CHUNK ids cada.
+    Retorna um map id -> Department na ordem dos ids recebidos; ids que não existem ficam fora do map.
+     */
+    @Override
+    public Map<Integer, Department> findByIds(Collection<Integer> ids) {
+        List<Integer> distinct = IdChunks.distinct(ids);
+        Map<Integer, Department> found = new HashMap<>(distinct.size() * 2);
+        if (distinct.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            for (int from = 0; from < distinct.size(); from += IdChunks.MAX_CHUNK) {
+                List<Integer> chunk = distinct.subList(from, Math.min(from + IdChunks.MAX_CHUNK, distinct.size()));
+                int size = IdChunks.paddedSize(chunk.size());
+                st = conn.prepareStatement("SELECT * FROM department WHERE Id IN (" + IdChunks.placeholders(size) + ")");
+                IdChunks.bind(st, 1, chunk, size);
+                rs = st.executeQuery();
+                DepartmentRowMapper mapper = new DepartmentRowMapper(rs);
+                while (rs.next()) {
+                    Department obj = mapper.department(rs);
+                    found.put(obj.getId(), obj);
+                }
+                DB.closeResultSet(rs);
+                DB.closeStatement(st);
+                rs = null;
+                st = null;
+            }
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+        Map<Integer, Department> result = new LinkedHashMap<>(found.size() * 2);
+        for (Integer id : distinct) {
+            Department obj = found.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
+    }
+
     //método para consultar e listar os Departments ordenados por nome
     @Override
     public List<Department> findAll() {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         //armazena e manipula os resultados da consulta SQL feitas pelo PreparedStatement
@@ -196,15 +650,14 @@ public class DepartmentDaoJDBC implements DepartmentDao {
         try {
             st = conn.prepareStatement("SELECT * FROM department ORDER BY Name");
             rs = st.executeQuery();
+            DepartmentRowMapper mapper = new DepartmentRowMapper(rs);
 
             List<Department> list = new ArrayList<>();
 
             //lógica para transformar a tabela recebida pelo ResultSet em objeto
             while (rs.next()) {
                 //criação e preenchimento do objeto
-                Department obj = new Department();
-                obj.setId(rs.getInt("Id"));
-                obj.setName(rs.getString("Name"));
+                Department obj = mapper.department(rs);
                 //adiciona o objeto na lista
                 list.add(obj);
             }
@@ -212,11 +665,115 @@ public class DepartmentDaoJDBC implements DepartmentDao {
             return list;
         }
         catch (SQLException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+
+    /*
+    página de Departments ordenados por nome, usando paginação por chave (Name, Id) em vez de OFFSET.
+    Name pode ser NULL e o MySQL ordena NULL antes dos demais, por isso o cursor com nome nulo tem um filtro próprio.
+     */
+    @Override
+    public Page<Department> findPage(PageCursor cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        String where = "";
+        if (cursor != null) {
+            where = cursor.getName() == null
+                    ? "WHERE (Name IS NULL AND Id > ?) OR Name IS NOT NULL "
+                    : "WHERE Name > ? OR (Name = ? AND Id > ?) ";
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement("SELECT * FROM department " + where + "ORDER BY Name, Id LIMIT ?");
+            int i = 1;
+            if (cursor != null) {
+                if (cursor.getName() != null) {
+                    st.setString(i++, cursor.getName());
+                    st.setString(i++, cursor.getName());
+                }
+                st.setInt(i++, cursor.getId());
+            }
+            st.setInt(i, limit + 1);
+            rs = st.executeQuery();
+            DepartmentRowMapper mapper = new DepartmentRowMapper(rs);
+
+            List<Department> list = new ArrayList<>(Math.min(limit, 1000));
+            boolean hasNext = false;
+            while (rs.next()) {
+                //a linha extra só indica que existe uma próxima página
+                if (list.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                Department obj = mapper.department(rs);
+                list.add(obj);
+            }
+            PageCursor next = null;
+            if (hasNext) {
+                Department last = list.get(list.size() - 1);
+                next = new PageCursor(last.getName(), last.getId());
+            }
+            return new Page<>(list, next);
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+
+    //feed de alterações dos Departments, como o SellerDaoJDBC.findModifiedSince
+    @Override
+    public Changes<Department> findModifiedSince(ChangeToken since, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        checkRowVersions();
+        long version = RowVersions.since(since, 0, 1);
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            //as duas consultas param na mesma versão confirmada, como no SellerDaoJDBC.changesSince
+            long until = RowVersions.current(conn, RowVersions.DEPARTMENT);
+            st = conn.prepareStatement("SELECT * FROM department WHERE RowVersion > ? AND RowVersion <= ? "
+                    + "ORDER BY RowVersion LIMIT ?");
+            st.setLong(1, version);
+            st.setLong(2, until);
+            st.setInt(3, limit + 1);
+            rs = st.executeQuery();
+            DepartmentRowMapper mapper = new DepartmentRowMapper(rs);
+            int rowVersion = rs.findColumn("RowVersion");
+            List<RowVersions.Change<Department>> changed = new ArrayList<>();
+            while (rs.next()) {
+                Department obj = mapper.department(rs);
+                changed.add(new RowVersions.Change<>(rs.getLong(rowVersion), obj.getId(), obj));
+            }
+            List<RowVersions.Change<Department>> deleted =
+                    RowVersions.deletedSince(conn, RowVersions.DEPARTMENT, version, until, limit + 1);
+            return RowVersions.page(RowVersions.merge(changed, deleted, limit + 1), limit, version);
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
         }
         finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            releaseReadConnection(conn);
         }
     }
 }
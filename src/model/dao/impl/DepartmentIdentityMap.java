@@ -0,0 +1,92 @@
+package model.dao.impl;
+
+import model.entities.Department;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+mapa de identidade dos Departments lidos junto com os Sellers, compartilhado pelo processo: todos os Sellers do
+department 2 apontam para o mesmo objeto, mesmo vindo de consultas diferentes. Os valores são referências fracas,
+então um Department que ninguém mais usa é coletado normalmente e sai do mapa.
+
+Os objetos guardados são Departments comuns, mas o DAO nunca altera um deles depois de entregue (cópia na escrita):
+quando uma leitura ou uma escrita do DepartmentDao traz outro nome, o mapa passa a guardar um objeto novo e os Sellers
+já lidos continuam com o anterior. Assim nenhuma leitura (nem uma réplica atrasada) altera um objeto que outra thread
+está usando. Quem alterar o Department de um Seller lido fora de transação altera o de todos os Sellers que o
+compartilham; para mudar só um, troque por um novo com seller.setDepartment(new Department(...)).
+ */
+final class DepartmentIdentityMap {
+    static final DepartmentIdentityMap SHARED = new DepartmentIdentityMap();
+
+    private final ConcurrentHashMap<Integer, Ref> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Department> queue = new ReferenceQueue<>();
+
+    //Department compartilhado com esse id e nome, criado (ou trocado por um novo) se ainda não existir
+    Department get(int id, String name) {
+        expunge();
+        Ref ref = map.get(id);
+        Department dep = ref != null ? ref.get() : null;
+        if (matches(dep, id, name)) {
+            return dep;
+        }
+        Department[] holder = new Department[1];
+        map.compute(id, (k, old) -> {
+            Department existing = old != null ? old.get() : null;
+            if (matches(existing, k, name)) {
+                holder[0] = existing;
+                return old;
+            }
+            holder[0] = new Department(k, name);
+            return new Ref(holder[0], k, queue);
+        });
+        return holder[0];
+    }
+
+    //o objeto guardado só é reaproveitado se ainda tiver o id e o nome lidos (quem chamou pode ter alterado)
+    private static boolean matches(Department dep, int id, String name) {
+        return dep != null && dep.getId() != null && dep.getId() == id && Objects.equals(dep.getName(), name);
+    }
+
+    //depois de uma escrita que mudou o nome, tira o Department antigo do mapa; a próxima leitura cria um novo
+    void refresh(Department obj) {
+        if (obj.getId() == null) {
+            return;
+        }
+        map.computeIfPresent(obj.getId(), (k, old) -> {
+            Department existing = old.get();
+            return existing != null && Objects.equals(existing.getName(), obj.getName()) ? old : null;
+        });
+    }
+
+    void remove(Integer id) {
+        if (id != null) {
+            map.remove(id);
+        }
+    }
+
+    //quantos Departments estão no mapa (inclui os já coletados e ainda não removidos)
+    int size() {
+        expunge();
+        return map.size();
+    }
+
+    //remove as entradas cujo Department já foi coletado
+    private void expunge() {
+        Ref ref;
+        while ((ref = (Ref) queue.poll()) != null) {
+            map.remove(ref.id, ref);
+        }
+    }
+
+    private static final class Ref extends WeakReference<Department> {
+        final int id;
+
+        Ref(Department dep, int id, ReferenceQueue<Department> queue) {
+            super(dep, queue);
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package model.dao.impl;
+
+import model.entities.Department;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//transforma as linhas da tabela department em objetos, lendo as colunas pelo índice procurado uma única vez
+final class DepartmentRowMapper {
+    private final int id;
+    private final int name;
+
+    DepartmentRowMapper(ResultSet rs) throws SQLException {
+        id = rs.findColumn("Id");
+        name = rs.findColumn("Name");
+    }
+
+    Department department(ResultSet rs) throws SQLException {
+        Department obj = new Department();
+        obj.setId(rs.getInt(id));
+        obj.setName(rs.getString(name));
+        return obj;
+    }
+}
@@ -0,0 +1,90 @@
+package model.dao.impl;
+
+import db.DbExecutor;
+import model.dao.AsyncDepartmentDao;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.DepartmentDao;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.UpsertResult;
+import model.entities.Department;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+//AsyncDepartmentDao que executa as chamadas de um DepartmentDao comum no DbExecutor
+public class ExecutorDepartmentDao implements AsyncDepartmentDao {
+    private final DepartmentDao dao;
+    private final DbExecutor executor;
+
+    public ExecutorDepartmentDao(DepartmentDao dao, DbExecutor executor) {
+        if (dao == null || executor == null) {
+            throw new IllegalArgumentException("Department dao and executor cannot be null.");
+        }
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(Department obj) {
+        return executor.run(() -> dao.insert(obj));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAll(Collection<Department> list) {
+        return executor.run(() -> dao.insertAll(list));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAll(Collection<Department> list, int batchSize) {
+        return executor.run(() -> dao.insertAll(list, batchSize));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(Department obj) {
+        return executor.run(() -> dao.update(obj));
+    }
+
+    @Override
+    public CompletableFuture<UpsertResult> upsert(Department obj) {
+        return executor.submit(() -> dao.upsert(obj));
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertAll(Collection<Department> list) {
+        return executor.run(() -> dao.upsertAll(list));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(Integer id) {
+        return executor.run(() -> dao.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Department> findById(Integer id) {
+        return executor.submit(() -> dao.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Department>> findByIds(Collection<Integer> ids) {
+        return executor.submit(() -> dao.findByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<Department>> findAll() {
+        return executor.submit(dao::findAll);
+    }
+
+    @Override
+    public CompletableFuture<Page<Department>> findPage(PageCursor cursor, int limit) {
+        return executor.submit(() -> dao.findPage(cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<Changes<Department>> findModifiedSince(ChangeToken since, int limit) {
+        return executor.submit(() -> dao.findModifiedSince(since, limit));
+    }
+}
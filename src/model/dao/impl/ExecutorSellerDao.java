@@ -0,0 +1,158 @@
+package model.dao.impl;
+
+import db.DbExecutor;
+import model.dao.AsyncSellerDao;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//AsyncSellerDao que executa as chamadas de um SellerDao comum no DbExecutor
+public class ExecutorSellerDao implements AsyncSellerDao {
+    private final SellerDao dao;
+    private final DbExecutor executor;
+
+    public ExecutorSellerDao(SellerDao dao, DbExecutor executor) {
+        if (dao == null || executor == null) {
+            throw new IllegalArgumentException("Seller dao and executor cannot be null.");
+        }
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(Seller obj) {
+        return executor.run(() -> dao.insert(obj));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAll(Collection<Seller> list) {
+        return executor.run(() -> dao.insertAll(list));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAll(Collection<Seller> list, int batchSize) {
+        return executor.run(() -> dao.insertAll(list, batchSize));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(Seller obj) {
+        return executor.run(() -> dao.update(obj));
+    }
+
+    @Override
+    public CompletableFuture<UpsertResult> upsert(Seller obj) {
+        return executor.submit(() -> dao.upsert(obj));
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertAll(Collection<Seller> list) {
+        return executor.run(() -> dao.upsertAll(list));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateAll(Collection<Seller> list) {
+        return executor.run(() -> dao.updateAll(list));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(Integer id) {
+        return executor.run(() -> dao.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Seller> findById(Integer id) {
+        return executor.submit(() -> dao.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Seller>> findByIds(Collection<Integer> ids) {
+        return executor.submit(() -> dao.findByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<Seller>> findAll() {
+        return executor.submit(dao::findAll);
+    }
+
+    @Override
+    public CompletableFuture<List<Seller>> findAllParallel(int parallelism, boolean orderByName) {
+        return executor.submit(() -> dao.findAllParallel(parallelism, orderByName));
+    }
+
+    @Override
+    public CompletableFuture<SellerTable> findAllAsTable() {
+        return executor.submit(dao::findAllAsTable);
+    }
+
+    @Override
+    public CompletableFuture<Long> exportAll(ExportFormat format, Path file) {
+        return executor.submit(() -> dao.exportAll(format, file));
+    }
+
+    @Override
+    public CompletableFuture<List<SalaryStats>> findSalaryStatsByDepartment() {
+        return executor.submit(dao::findSalaryStatsByDepartment);
+    }
+
+    @Override
+    public CompletableFuture<List<SalaryStats>> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        return executor.submit(() -> dao.findSalaryStatsByDepartment(birthFrom, birthTo));
+    }
+
+    @Override
+    public CompletableFuture<List<Seller>> findByDepartment(Department department) {
+        return executor.submit(() -> dao.findByDepartment(department));
+    }
+
+    @Override
+    public CompletableFuture<Page<Seller>> findPage(PageCursor cursor, int limit) {
+        return executor.submit(() -> dao.findPage(cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<Page<Seller>> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        return executor.submit(() -> dao.findPageByDepartment(department, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<Stream<Seller>> streamAll() {
+        return executor.submit(dao::streamAll);
+    }
+
+    @Override
+    public CompletableFuture<Stream<Seller>> streamByDepartment(Department department) {
+        return executor.submit(() -> dao.streamByDepartment(department));
+    }
+
+    @Override
+    public CompletableFuture<Void> forEach(Consumer<Seller> action) {
+        return executor.run(() -> dao.forEach(action));
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachParallel(int parallelism, Consumer<Seller> action) {
+        return executor.run(() -> dao.forEachParallel(parallelism, action));
+    }
+
+    @Override
+    public CompletableFuture<Changes<Seller>> findModifiedSince(ChangeToken since, int limit) {
+        return executor.submit(() -> dao.findModifiedSince(since, limit));
+    }
+}
@@ -0,0 +1,88 @@
+package model.dao.impl;
+
+import db.ConnectionPool;
+import db.DB;
+import db.DbException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+gera ids únicos entre vários bancos a partir de uma sequência guardada em um só deles (tabela id_sequence).
+Cada ida ao BD reserva um bloco de blockSize ids, que depois são entregues da memória; ids de um bloco não usado
+até o fim (ou de um insert que falhou) ficam sem uso, o que só deixa buracos na numeração.
+
+A linha da sequência precisa existir, com NextId maior que qualquer id já gravado em todos os shards.
+ */
+class HiLoIdGenerator {
+    private final ConnectionPool pool;
+    private final String sequence;
+    private final int blockSize;
+
+    //próximo id a entregar e o fim (exclusivo) do bloco atual
+    private int next = 0;
+    private int limit = 0;
+
+    HiLoIdGenerator(ConnectionPool pool, String sequence, int blockSize) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null.");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be greater than zero.");
+        }
+        this.pool = pool;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    synchronized int next() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    /*
+    reserva o próximo bloco em uma transação própria: o SELECT ... FOR UPDATE trava a linha da sequência até o commit,
+    então dois processos nunca recebem o mesmo bloco.
+     */
+    private void reserveBlock() {
+        Connection conn = pool.borrow();
+        PreparedStatement select = null;
+        PreparedStatement update = null;
+        ResultSet rs = null;
+        try {
+            conn.setAutoCommit(false);
+            select = conn.prepareStatement("SELECT NextId FROM id_sequence WHERE Name = ? FOR UPDATE");
+            select.setString(1, sequence);
+            rs = select.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Id sequence not found: " + sequence);
+            }
+            int start = rs.getInt(1);
+            update = conn.prepareStatement("UPDATE id_sequence SET NextId = ? WHERE Name = ?");
+            update.setInt(1, start + blockSize);
+            update.setString(2, sequence);
+            update.executeUpdate();
+            conn.commit();
+            next = start;
+            limit = start + blockSize;
+        }
+        catch (SQLException e) {
+            try {
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(select);
+            DB.closeStatement(update);
+            DB.closeConnection(conn);
+        }
+    }
+}
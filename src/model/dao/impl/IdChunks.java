@@ -0,0 +1,62 @@
+package model.dao.impl;
+
+import db.DbException;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/*
+auxiliar das consultas por vários ids (WHERE Id IN (...)). Os ids são divididos em blocos de no máximo MAX_CHUNK
+e cada bloco é completado até a próxima potência de 2 repetindo o último id, assim só existem poucos formatos de SQL
+diferentes e todos aproveitam o cache de PreparedStatement das conexões.
+ */
+final class IdChunks {
+    static final int MAX_CHUNK = 512;
+
+    private IdChunks() {
+    }
+
+    //valida os ids e remove repetidos, mantendo a ordem de entrada
+    static List<Integer> distinct(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Id list cannot be null.");
+        }
+        LinkedHashSet<Integer> set = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            if (id == null || id <= 0) {
+                throw new DbException("Invalid Id: " + id);
+            }
+            set.add(id);
+        }
+        return new ArrayList<>(set);
+    }
+
+    //quantos placeholders o bloco com n ids vai usar
+    static int paddedSize(int n) {
+        int size = Integer.highestOneBit(n);
+        return size == n ? n : Math.min(size << 1, MAX_CHUNK);
+    }
+
+    //"?, ?, ?" com n placeholders
+    static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 3);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    //preenche os placeholders a partir de firstIndex com os ids do bloco, repetindo o último até completar size
+    static void bind(PreparedStatement st, int firstIndex, List<Integer> chunk, int size) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            st.setInt(firstIndex + i, chunk.get(Math.min(i, chunk.size() - 1)));
+        }
+    }
+}
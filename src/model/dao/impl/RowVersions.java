@@ -0,0 +1,193 @@
+package model.dao.impl;
+
+import db.DB;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+versões de linha usadas pelo findModifiedSince, opcionais por tabela (setRowVersions dos DAOs JDBC, ligado pela
+DaoFactory para as tabelas do changeFeed.tables). Com elas ligadas, toda escrita grava na coluna RowVersion da linha
+um número tirado do contador da tabela em row_version, e todo delete grava o id apagado com a sua versão na tabela
+<tabela>_tombstone. O feed é só um WHERE RowVersion > ? nas duas tabelas.
+
+O UPDATE no contador trava a linha dele até o commit da transação que reservou as versões, então uma transação
+só pega versões depois que a anterior terminou: as versões ficam visíveis na mesma ordem em que foram reservadas,
+e um consumidor que já leu até a versão N nunca vê aparecer depois uma linha com versão menor. O preço é que as
+escritas na tabela são gravadas uma de cada vez, e é por isso que a numeração vem desligada.
+
+As duas consultas do feed são comandos separados, cada um com o seu snapshot. Por isso o feed lê antes o valor
+confirmado do contador (current) e limita as duas a RowVersion <= esse valor: todas as versões até ele já estão
+confirmadas, então as duas consultas veem o mesmo conjunto, e o que for gravado entre elas fica para a próxima página.
+ */
+final class RowVersions {
+    static final String SELLER = "seller";
+    static final String DEPARTMENT = "department";
+
+    private RowVersions() {
+    }
+
+    /*
+    reserva count versões seguidas para a tabela, na transação da conexão, e retorna a primeira. O contador
+    fica travado até o commit ou rollback dessa transação.
+     */
+    static long reserve(Connection conn, String table, int count) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("UPDATE row_version SET Version = Version + ? WHERE Name = ?");
+        ResultSet rs = null;
+        try {
+            st.setInt(1, count);
+            st.setString(2, table);
+            if (st.executeUpdate() == 0) {
+                throw new SQLException("Missing row_version row for table " + table);
+            }
+            DB.closeStatement(st);
+            st = conn.prepareStatement("SELECT Version FROM row_version WHERE Name = ?");
+            st.setString(1, table);
+            rs = st.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Missing row_version row for table " + table);
+            }
+            return rs.getLong(1) - count + 1;
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+        }
+    }
+
+    //último valor confirmado do contador da tabela: todas as versões até ele já estão confirmadas
+    static long current(Connection conn, String table) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("SELECT Version FROM row_version WHERE Name = ?");
+        ResultSet rs = null;
+        try {
+            st.setString(1, table);
+            rs = st.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Missing row_version row for table " + table);
+            }
+            return rs.getLong(1);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+        }
+    }
+
+    //grava o id apagado na tabela de tombstones, com a versão do delete
+    static void tombstone(Connection conn, SqlDialect dialect, String table, int id, long version)
+            throws SQLException {
+        PreparedStatement st = conn.prepareStatement(dialect.upsert(table + "_tombstone", "Id", "RowVersion"));
+        try {
+            st.setInt(1, id);
+            st.setLong(2, version);
+            st.executeUpdate();
+        }
+        finally {
+            DB.closeStatement(st);
+        }
+    }
+
+    //até limit ids apagados depois da versão since e até a versão until, em ordem de versão
+    static <T> List<Change<T>> deletedSince(Connection conn, String table, long since, long until, int limit)
+            throws SQLException {
+        PreparedStatement st = conn.prepareStatement("SELECT Id, RowVersion FROM " + table + "_tombstone "
+                + "WHERE RowVersion > ? AND RowVersion <= ? ORDER BY RowVersion LIMIT ?");
+        ResultSet rs = null;
+        try {
+            st.setLong(1, since);
+            st.setLong(2, until);
+            st.setInt(3, limit);
+            rs = st.executeQuery();
+            List<Change<T>> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new Change<>(rs.getLong(2), rs.getInt(1), null));
+            }
+            return list;
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+        }
+    }
+
+    /*
+    intercala por versão as linhas alteradas e as apagadas, as duas já em ordem de versão, até limit alterações.
+    Como cada lista tem todas as versões dela até o seu último item, qualquer começo da lista intercalada deixa o
+    consumidor sem buracos.
+     */
+    static <T> List<Change<T>> merge(List<Change<T>> changed, List<Change<T>> deleted, int limit) {
+        List<Change<T>> result = new ArrayList<>(Math.min(limit, changed.size() + deleted.size()));
+        int i = 0;
+        int j = 0;
+        while (result.size() < limit && (i < changed.size() || j < deleted.size())) {
+            if (j == deleted.size() || (i < changed.size() && changed.get(i).version < deleted.get(j).version)) {
+                result.add(changed.get(i++));
+            }
+            else {
+                result.add(deleted.get(j++));
+            }
+        }
+        return result;
+    }
+
+    //versão inicial do token do banco de índice index; null = desde o começo
+    static long since(ChangeToken token, int index, int size) {
+        if (token == null) {
+            return 0;
+        }
+        if (token.size() != size) {
+            throw new IllegalArgumentException("Change token has " + token.size() + " versions, expected " + size
+                    + ".");
+        }
+        return token.getVersion(index);
+    }
+
+    /*
+    monta a página com os primeiros limit itens de entries (buscados com limit + 1, o item a mais só indica que
+    existem mais alterações). Um id apagado e gravado de novo na mesma página fica só como alterado.
+     */
+    static <T> Changes<T> page(List<Change<T>> entries, int limit, long since) {
+        List<Change<T>> taken = entries.size() > limit ? entries.subList(0, limit) : entries;
+        long last = taken.isEmpty() ? since : taken.get(taken.size() - 1).version;
+        return toChanges(taken, new ChangeToken(last), entries.size() > limit);
+    }
+
+    static <T> Changes<T> toChanges(List<Change<T>> entries, ChangeToken next, boolean more) {
+        List<T> changed = new ArrayList<>();
+        Set<Integer> changedIds = new HashSet<>();
+        for (Change<T> entry : entries) {
+            if (entry.obj != null && changedIds.add(entry.id)) {
+                changed.add(entry.obj);
+            }
+        }
+        List<Integer> deleted = new ArrayList<>();
+        Set<Integer> deletedIds = new HashSet<>();
+        for (Change<T> entry : entries) {
+            if (entry.obj == null && !changedIds.contains(entry.id) && deletedIds.add(entry.id)) {
+                deleted.add(entry.id);
+            }
+        }
+        return new Changes<>(changed, deleted, next, more);
+    }
+
+    //uma linha do feed: o objeto gravado ou, para um delete, obj null
+    static final class Change<T> {
+        final long version;
+        final int id;
+        final T obj;
+
+        Change(long version, int id, T obj) {
+            this.version = version;
+            this.id = id;
+            this.obj = obj;
+        }
+    }
+}
@@ -0,0 +1,662 @@
+package model.dao.impl;
+
+import db.DbException;
+import db.ReplicaRouter;
+import model.dao.DepartmentDao;
+import model.dao.SellerDao;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+carga de sellers a partir de arquivos CSV grandes. Uma thread lê o arquivo em blocos de CHUNK_SIZE bytes, cortados
+sempre no fim de um registro (quebras de linha dentro de aspas não cortam), e threads de trabalho convertem cada bloco
+em Sellers, validam com as mesmas regras do insert e gravam com o insertAll em lotes de batchSize. No máximo
+2 * threads blocos ficam em memória ao mesmo tempo, seja qual for o tamanho do arquivo.
+
+O CSV precisa de cabeçalho com as colunas Name, Email, BirthDate (yyyy-MM-dd ou dd/MM/yyyy), BaseSalary e
+DepartmentName ou DepartmentId, em qualquer ordem; outras colunas são ignoradas, então o CSV do exportAll pode ser
+carregado de volta (com ids novos). O department é procurado pelo nome (sem diferenciar maiúsculas) em um mapa
+carregado uma vez com o findAll do DepartmentDao.
+
+Registros inválidos e os que o BD recusar vão para o arquivo de rejeitados: o cabeçalho original com uma coluna Error
+a mais, e cada registro como estava no arquivo seguido do motivo. Depois de corrigido, esse arquivo pode ser carregado
+de novo; se ele for rejeitado outra vez, a coluna Error antiga é trocada pelo motivo novo em vez de ganhar outra.
+ */
+public class SellerBulkLoader {
+    private static final int CHUNK_SIZE = 4 << 20;
+    private static final DateTimeFormatter BR_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final SellerDao sellerDao;
+    private final DepartmentDao departmentDao;
+    private final int threads;
+    private final int batchSize;
+    private final long progressIntervalMillis;
+
+    public SellerBulkLoader(SellerDao sellerDao, DepartmentDao departmentDao, int threads, int batchSize,
+                            long progressIntervalMillis) {
+        if (sellerDao == null) {
+            throw new IllegalArgumentException("Seller dao cannot be null.");
+        }
+        if (departmentDao == null) {
+            throw new IllegalArgumentException("Department dao cannot be null.");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be greater than zero.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        if (progressIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Progress interval must be greater than zero.");
+        }
+        this.sellerDao = sellerDao;
+        this.departmentDao = departmentDao;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /*
+    carrega o arquivo input. rejected é o arquivo dos registros rejeitados (null para só contar) e listener recebe o
+    andamento a cada progressIntervalMillis e no final (pode ser null). Retorna os totais da carga.
+     */
+    public Progress load(Path input, Path rejected, Consumer<Progress> listener) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input file cannot be null.");
+        }
+        Map<String, Department> byName = new HashMap<>();
+        Map<Integer, Department> byId = new HashMap<>();
+        for (Department dep : departmentDao.findAll()) {
+            if (dep.getName() != null) {
+                byName.put(dep.getName().trim().toLowerCase(Locale.ROOT), dep);
+            }
+            byId.put(dep.getId(), dep);
+        }
+
+        Load load = new Load(byName, byId);
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "seller-loader-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        int maxInFlight = threads * 2;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try (ChunkReader reader = new ChunkReader(FileChannel.open(input, StandardOpenOption.READ));
+             RejectedWriter rejectedOut = new RejectedWriter(rejected)) {
+            load.totalBytes = reader.size();
+            String header = reader.header();
+            if (header == null) {
+                throw new IllegalArgumentException("Input file is empty.");
+            }
+            load.columns = new Columns(parseFields(header));
+            load.rejected = rejectedOut;
+            rejectedOut.header(header);
+
+            Chunk chunk;
+            while (load.failure.get() == null && (chunk = reader.next()) != null) {
+                while (!inFlight.tryAcquire(progressIntervalMillis, TimeUnit.MILLISECONDS)) {
+                    load.report(listener, reader.position());
+                }
+                Chunk c = chunk;
+                //as escritas dos workers contam como escritas de quem chamou o load (leituras seguintes no primário)
+                ReplicaRouter.WriteMarker marker = ReplicaRouter.currentMarker();
+                workers.execute(() -> {
+                    ReplicaRouter.WriteMarker previous = ReplicaRouter.bindMarker(marker);
+                    try {
+                        process(c, load);
+                    }
+                    catch (RuntimeException e) {
+                        load.failure.compareAndSet(null, e);
+                    }
+                    finally {
+                        ReplicaRouter.bindMarker(previous);
+                        inFlight.release();
+                    }
+                });
+                load.reportIfDue(listener, reader.position(), progressIntervalMillis);
+            }
+            //espera os blocos em andamento
+            while (!inFlight.tryAcquire(maxInFlight, progressIntervalMillis, TimeUnit.MILLISECONDS)) {
+                load.report(listener, reader.position());
+            }
+            RuntimeException failure = load.failure.get();
+            if (failure != null) {
+                throw failure;
+            }
+            return load.report(listener, reader.position());
+        }
+        catch (IOException e) {
+            throw new DbException("Error reading bulk load files: " + e.getMessage(), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while loading sellers");
+        }
+        finally {
+            workers.shutdownNow();
+        }
+    }
+
+    //converte os registros do bloco e grava os válidos
+    private void process(Chunk chunk, Load load) {
+        List<String> records = splitRecords(new String(chunk.data, StandardCharsets.UTF_8));
+        List<Seller> valid = new ArrayList<>(records.size());
+        List<String> raws = new ArrayList<>(records.size());
+        List<Long> numbers = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            String raw = records.get(i);
+            if (raw.trim().isEmpty()) {
+                continue;
+            }
+            load.read.increment();
+            try {
+                valid.add(load.toSeller(parseFields(raw)));
+                raws.add(raw);
+                numbers.add(chunk.firstRecord + i);
+            }
+            catch (IllegalArgumentException e) {
+                load.reject(raw, chunk.firstRecord + i, e.getMessage());
+            }
+        }
+        for (int from = 0; from < valid.size(); from += batchSize) {
+            int to = Math.min(valid.size(), from + batchSize);
+            insert(valid.subList(from, to), raws.subList(from, to), numbers.subList(from, to), load);
+        }
+    }
+
+    /*
+    grava o lote com um único insertAll (uma transação). Se o BD recusar o lote, os registros são gravados um a um
+    para separar os que têm problema, que vão para os rejeitados com a mensagem do BD.
+     */
+    private void insert(List<Seller> batch, List<String> raws, List<Long> numbers, Load load) {
+        try {
+            sellerDao.insertAll(batch, batchSize);
+            load.inserted.add(batch.size());
+            return;
+        }
+        catch (DbException e) {
+            //o lote foi desfeito: ids atribuídos antes da falha não valem
+            for (Seller obj : batch) {
+                obj.setId(null);
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                sellerDao.insert(batch.get(i));
+                load.inserted.increment();
+            }
+            catch (DbException e) {
+                load.reject(raws.get(i), numbers.get(i), e.getMessage());
+            }
+        }
+    }
+
+    //separa os registros do texto; \n dentro de aspas faz parte do campo. Linhas vazias também contam como registro
+    static List<String> splitRecords(String text) {
+        List<String> records = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            else if (c == '\n' && !quoted) {
+                records.add(stripCr(text, start, i));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            records.add(stripCr(text, start, text.length()));
+        }
+        return records;
+    }
+
+    private static String stripCr(String text, int start, int end) {
+        return text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+    }
+
+    //campos de um registro CSV; aspas dobradas dentro de um campo entre aspas viram uma aspa
+    static List<String> parseFields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < record.length() && record.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= record.length()) {
+                        throw new IllegalArgumentException("Unterminated quoted field.");
+                    }
+                    char c = record.charAt(i++);
+                    if (c == '"') {
+                        if (i < record.length() && record.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        }
+                        else {
+                            break;
+                        }
+                    }
+                    else {
+                        field.append(c);
+                    }
+                }
+                if (i < record.length() && record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted field.");
+                }
+            }
+            else {
+                int end = record.indexOf(',', i);
+                field.append(record, i, end >= 0 ? end : record.length());
+                i = end >= 0 ? end : record.length();
+            }
+            fields.add(field.toString());
+            if (i >= record.length()) {
+                return fields;
+            }
+            //pula a vírgula
+            i++;
+        }
+    }
+
+    //totais da carga até o momento
+    public static final class Progress {
+        private final long recordsRead;
+        private final long inserted;
+        private final long rejected;
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long elapsedMillis;
+
+        Progress(long recordsRead, long inserted, long rejected, long bytesRead, long totalBytes, long elapsedMillis) {
+            this.recordsRead = recordsRead;
+            this.inserted = inserted;
+            this.rejected = rejected;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        //porcentagem do arquivo já lida
+        public double getPercent() {
+            return totalBytes > 0 ? 100.0 * bytesRead / totalBytes : 100.0;
+        }
+
+        public double getInsertedPerSecond() {
+            return elapsedMillis > 0 ? inserted * 1000.0 / elapsedMillis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.1f%% read, %d records, %d inserted, %d rejected, %.0f rows/s",
+                    getPercent(), recordsRead, inserted, rejected, getInsertedPerSecond());
+        }
+    }
+
+    //estado de uma chamada ao load, compartilhado pelas threads de trabalho
+    private static final class Load {
+        final Map<String, Department> byName;
+        final Map<Integer, Department> byId;
+        final LongAdder read = new LongAdder();
+        final LongAdder inserted = new LongAdder();
+        final LongAdder rejectedCount = new LongAdder();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final long start = System.nanoTime();
+        long totalBytes;
+        long lastReport = System.nanoTime();
+        Columns columns;
+        RejectedWriter rejected;
+
+        Load(Map<String, Department> byName, Map<Integer, Department> byId) {
+            this.byName = byName;
+            this.byId = byId;
+        }
+
+        Seller toSeller(List<String> fields) {
+            if (fields.size() != columns.count) {
+                throw new IllegalArgumentException("Expected " + columns.count + " fields, got " + fields.size());
+            }
+            Seller obj = new Seller();
+            obj.setName(fields.get(columns.name).trim());
+            obj.setEmail(fields.get(columns.email).trim());
+            obj.setBirthDate(java.sql.Date.valueOf(parseDate(fields.get(columns.birthDate).trim())));
+            String salary = fields.get(columns.baseSalary).trim();
+            try {
+                obj.setBaseSalary(Double.parseDouble(salary));
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid base salary: " + salary);
+            }
+            obj.setDepartment(department(fields));
+            SellerDaoJDBC.validateSeller(obj);
+            return obj;
+        }
+
+        private Department department(List<String> fields) {
+            if (columns.departmentName >= 0) {
+                String name = fields.get(columns.departmentName).trim();
+                Department dep = byName.get(name.toLowerCase(Locale.ROOT));
+                if (dep == null) {
+                    throw new IllegalArgumentException("Unknown department: " + name);
+                }
+                return dep;
+            }
+            String id = fields.get(columns.departmentId).trim();
+            try {
+                Department dep = byId.get(Integer.parseInt(id));
+                if (dep == null) {
+                    throw new IllegalArgumentException("Unknown department id: " + id);
+                }
+                return dep;
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid department id: " + id);
+            }
+        }
+
+        private static LocalDate parseDate(String text) {
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("Birth date cannot be empty.");
+            }
+            try {
+                return text.indexOf('/') >= 0 ? LocalDate.parse(text, BR_DATE) : LocalDate.parse(text);
+            }
+            catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid birth date: " + text);
+            }
+        }
+
+        void reject(String raw, long record, String reason) {
+            rejectedCount.increment();
+            try {
+                rejected.write(raw, "Record " + record + ": " + reason);
+            }
+            catch (IOException e) {
+                throw new DbException("Error writing rejected rows file: " + e.getMessage(), e);
+            }
+        }
+
+        Progress report(Consumer<Progress> listener, long bytesRead) {
+            lastReport = System.nanoTime();
+            Progress progress = new Progress(read.sum(), inserted.sum(), rejectedCount.sum(), bytesRead, totalBytes,
+                    TimeUnit.NANOSECONDS.toMillis(lastReport - start));
+            if (listener != null) {
+                listener.accept(progress);
+            }
+            return progress;
+        }
+
+        void reportIfDue(Consumer<Progress> listener, long bytesRead, long intervalMillis) {
+            if (System.nanoTime() - lastReport >= TimeUnit.MILLISECONDS.toNanos(intervalMillis)) {
+                report(listener, bytesRead);
+            }
+        }
+    }
+
+    //posição de cada coluna usada no cabeçalho do arquivo (-1 = ausente)
+    private static final class Columns {
+        final int count;
+        final int name;
+        final int email;
+        final int birthDate;
+        final int baseSalary;
+        final int departmentName;
+        final int departmentId;
+
+        Columns(List<String> header) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                index.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            count = header.size();
+            name = required(index, "Name");
+            email = required(index, "Email");
+            birthDate = required(index, "BirthDate");
+            baseSalary = required(index, "BaseSalary");
+            departmentName = index.getOrDefault("departmentname", -1);
+            departmentId = index.getOrDefault("departmentid", -1);
+            if (departmentName < 0 && departmentId < 0) {
+                throw new IllegalArgumentException("Missing column: DepartmentName or DepartmentId");
+            }
+        }
+
+        private static int required(Map<String, Integer> index, String column) {
+            Integer i = index.get(column.toLowerCase(Locale.ROOT));
+            if (i == null) {
+                throw new IllegalArgumentException("Missing column: " + column);
+            }
+            return i;
+        }
+    }
+
+    //bloco de registros inteiros do arquivo; firstRecord é o número do primeiro (o cabeçalho é o registro 1)
+    private static final class Chunk {
+        final long firstRecord;
+        final byte[] data;
+
+        Chunk(long firstRecord, byte[] data) {
+            this.firstRecord = firstRecord;
+            this.data = data;
+        }
+    }
+
+    /*
+    lê o arquivo em blocos terminados no fim de um registro. A aspa (0x22) nunca aparece dentro de um caractere UTF-8
+    de vários bytes, então os bytes podem ser varridos sem decodificar para saber se uma quebra de linha está entre
+    aspas. Um registro maior que o bloco faz o buffer crescer.
+     */
+    private static final class ChunkReader implements Closeable {
+        private final FileChannel channel;
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int length = 0;
+        private boolean eof = false;
+        private long nextRecord = 1;
+        private long consumed = 0;
+
+        ChunkReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        //bytes do arquivo já entregues em blocos
+        long position() {
+            return consumed;
+        }
+
+        //primeiro registro do arquivo, sem o BOM do UTF-8 se houver; null se o arquivo estiver vazio
+        String header() throws IOException {
+            byte[] data = take(true);
+            if (data == null) {
+                return null;
+            }
+            String header = new String(data, StandardCharsets.UTF_8);
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> records = splitRecords(header);
+            return records.isEmpty() ? "" : records.get(0);
+        }
+
+        Chunk next() throws IOException {
+            long first = nextRecord;
+            byte[] data = take(false);
+            return data != null ? new Chunk(first, data) : null;
+        }
+
+        //retira do buffer os bytes até o fim do primeiro registro (onlyOne) ou do último registro completo
+        private byte[] take(boolean onlyOne) throws IOException {
+            while (true) {
+                int records = 0;
+                int boundary = 0;
+                boolean quoted = false;
+                for (int i = 0; i < length; i++) {
+                    byte b = buffer[i];
+                    if (b == '"') {
+                        quoted = !quoted;
+                    }
+                    else if (b == '\n' && !quoted) {
+                        records++;
+                        boundary = i + 1;
+                        if (onlyOne) {
+                            break;
+                        }
+                    }
+                }
+                if (eof && length > boundary && !(onlyOne && boundary > 0)) {
+                    //último registro sem \n no final
+                    records++;
+                    boundary = length;
+                }
+                if (boundary > 0 && (eof || onlyOne || length == buffer.length)) {
+                    byte[] data = Arrays.copyOf(buffer, boundary);
+                    System.arraycopy(buffer, boundary, buffer, 0, length - boundary);
+                    length -= boundary;
+                    nextRecord += records;
+                    consumed += boundary;
+                    return data;
+                }
+                if (eof) {
+                    return null;
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int n = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+                if (n < 0) {
+                    eof = true;
+                }
+                else {
+                    length += n;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    //arquivo dos registros rejeitados, escrito por várias threads
+    private static final class RejectedWriter implements Closeable {
+        private final BufferedWriter out;
+        //colunas do arquivo lido quando ele já é um arquivo de rejeitados (última coluna Error), senão -1
+        private int previousColumns = -1;
+
+        RejectedWriter(Path file) throws IOException {
+            this.out = file != null ? Files.newBufferedWriter(file, StandardCharsets.UTF_8) : null;
+        }
+
+        synchronized void header(String header) throws IOException {
+            List<String> fields = parseFields(header);
+            if (fields.size() > 1 && fields.get(fields.size() - 1).trim().equalsIgnoreCase("Error")) {
+                previousColumns = fields.size();
+                header = withoutLastField(header);
+            }
+            if (out != null) {
+                out.write(header);
+                out.write(",Error\n");
+            }
+        }
+
+        synchronized void write(String raw, String reason) throws IOException {
+            if (out != null) {
+                out.write(previousColumns > 0 ? withoutPreviousReason(raw) : raw);
+                out.write(",\"");
+                out.write(reason != null ? reason.replace("\"", "\"\"") : "");
+                out.write("\"\n");
+            }
+        }
+
+        //o motivo antigo só é tirado de registros completos, para não cortar um campo de dados
+        private String withoutPreviousReason(String raw) {
+            try {
+                return parseFields(raw).size() == previousColumns ? withoutLastField(raw) : raw;
+            }
+            catch (IllegalArgumentException e) {
+                //registro mal formado (o motivo da rejeição): vai como estava
+                return raw;
+            }
+        }
+
+        //registro sem o último campo: corta na última vírgula fora de aspas
+        private static String withoutLastField(String record) {
+            boolean quoted = false;
+            int last = -1;
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                }
+                else if (c == ',' && !quoted) {
+                    last = i;
+                }
+            }
+            return last >= 0 ? record.substring(0, last) : record;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
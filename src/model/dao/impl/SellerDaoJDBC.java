@@ -1,52 +1,213 @@
 package model.dao.impl;
 
+import db.ConnectionPool;
 import db.DB;
 import db.DbException;
+import db.DbExecutor;
+import db.ReplicaRouter;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
 import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
 import model.entities.Department;
 import model.entities.Seller;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 //é a classe que implementa a interface SelleDao
 public class SellerDaoJDBC implements SellerDao {
-    private Connection conn;
+    private static final String INSERT_SQL = "INSERT INTO seller "
+            + "(Name, Email, BirthDate, BaseSalary, DepartmentId, RowVersion) "
+            + "VALUES "
+            + "(?, ?, ?, ?, ?, ?)";
+    //INSERT com o id já definido, usado quando os ids são gerados fora do BD (ShardedSellerDao)
+    private static final String INSERT_WITH_ID_SQL = "INSERT INTO seller "
+            + "(Id, Name, Email, BirthDate, BaseSalary, DepartmentId, RowVersion) "
+            + "VALUES "
+            + "(?, ?, ?, ?, ?, ?, ?)";
+    //colunas gravadas pelo update, na ordem de Seller.Field
+    private static final String[] UPDATE_COLUMNS = {"Name", "Email", "BirthDate", "BaseSalary", "DepartmentId"};
+    /*
+    UPDATE de cada combinação de colunas alteradas (mais a RowVersion, sempre gravada), indexado pela máscara de
+    bits dos Seller.Field alterados.
+    Como o SQL de cada combinação é sempre o mesmo texto, o cache de PreparedStatement das conexões reaproveita
+    um statement por formato.
+     */
+    private static final String[] UPDATE_SQL_BY_SHAPE = new String[1 << UPDATE_COLUMNS.length];
+    static {
+        for (int mask = 1; mask < UPDATE_SQL_BY_SHAPE.length; mask++) {
+            StringBuilder sql = new StringBuilder("UPDATE seller SET ");
+            for (int i = 0; i < UPDATE_COLUMNS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    sql.append(sql.length() > "UPDATE seller SET ".length() ? ", " : "")
+                            .append(UPDATE_COLUMNS[i]).append(" = ?");
+                }
+            }
+            UPDATE_SQL_BY_SHAPE[mask] = sql.append(", RowVersion = ? WHERE Id = ?").toString();
+        }
+    }
+    //UPDATE com todas as colunas, usado pelo updateAll
+    private static final String UPDATE_SQL = UPDATE_SQL_BY_SHAPE[UPDATE_SQL_BY_SHAPE.length - 1];
+    //tamanho padrão dos lotes do insertAll e do updateAll
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    //faixas de id por conexão nos scans paralelos: faixas menores equilibram as threads quando há buracos nos ids
+    private static final int RANGES_PER_WORKER = 4;
+    //consulta base de seller com o nome do department, usada pelos métodos de stream
+    private static final String SELECT_SQL = "SELECT seller.*,department.Name as DepName "
+            + "FROM seller INNER JOIN department "
+            + "ON seller.DepartmentId = department.Id ";
+
+    //conexão fixa (quando o DAO é criado com uma Connection) ou pool de onde cada operação pega uma conexão
+    private final Connection conn;
+    private final ConnectionPool pool;
+    //router das leituras para as réplicas (null = leituras no mesmo pool das escritas)
+    private final ReplicaRouter router;
+    //quantas linhas o driver busca por vez nos métodos de stream
+    private int fetchSize = 1000;
+    //banco usado e o comando de upsert dele, definidos na primeira chamada ao upsert ou ao deleteById
+    private volatile SqlDialect dialect = null;
+    private volatile String upsertSql = null;
+    //se as escritas numeram as linhas para o findModifiedSince (desligado: não passam pelo contador row_version)
+    private volatile boolean rowVersions = false;
 
     //construtor com argumento tipo Connection para forçar injeção de dependência
     public SellerDaoJDBC(Connection conn) {
         this.conn = conn;
+        this.pool = null;
+        this.router = null;
+    }
+
+    //construtor com o pool de conexões: cada operação pega uma conexão emprestada e devolve ao terminar
+    public SellerDaoJDBC(ConnectionPool pool) {
+        this.conn = null;
+        this.pool = pool;
+        this.router = null;
+    }
+
+    //construtor com o router: escritas no pool primário e leituras nas réplicas dele
+    public SellerDaoJDBC(ReplicaRouter router) {
+        this.conn = null;
+        this.pool = router.getPrimary();
+        this.router = router;
+    }
+
+    /*
+    define quantas linhas o driver busca por vez nos métodos de stream. No MySQL o cursor só é usado com
+    useCursorFetch=true, que o ConnectionPool.fromProperties liga por padrão, ou com fetchSize = Integer.MIN_VALUE
+    (linha a linha).
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /*
+    liga a numeração das linhas para o findModifiedSince. Cada escrita reserva versões no contador row_version, que
+    fica travado até o commit, então as escritas na tabela passam a ser gravadas uma de cada vez; por isso vem
+    desligada. Todos os DAOs que escrevem na tabela precisam estar com a mesma opção (a DaoFactory usa o
+    changeFeed.tables do db.properties), senão o feed perde as escritas dos que estiverem desligados.
+     */
+    public void setRowVersions(boolean rowVersions) {
+        this.rowVersions = rowVersions;
+    }
+
+    public boolean isRowVersions() {
+        return rowVersions;
+    }
+
+    //reserva count versões no contador da tabela; com a numeração desligada não vai ao BD e as linhas ficam com 0
+    private long reserveVersions(Connection conn, int count) throws SQLException {
+        return rowVersions ? RowVersions.reserve(conn, RowVersions.SELLER, count) : 0;
+    }
+
+    //o feed só enxerga escritas numeradas, então só pode ser lido com a numeração ligada
+    private void checkRowVersions() {
+        if (!rowVersions) {
+            throw new IllegalStateException("Row versions are disabled for seller; add it to changeFeed.tables.");
+        }
+    }
+
+    /*
+    retorna a conexão que a escrita vai usar. Dentro de um DB.inTransaction é a conexão da transação, e os
+    commits/rollbacks feitos pelos métodos abaixo ficam para o final da transação.
+     */
+    private Connection acquireConnection() {
+        Connection tx = DB.currentTransaction();
+        if (tx != null) {
+            return tx;
+        }
+        return pool != null ? pool.borrow() : conn;
+    }
+
+    /*
+    devolve ao pool a conexão usada pela escrita (a conexão fixa e a da transação continuam abertas) e avisa o router,
+    para as próximas leituras da thread irem ao primário e enxergarem o que acabou de ser gravado.
+     */
+    private void releaseConnection(Connection c) {
+        releaseReadConnection(c);
+        if (router != null) {
+            router.markWrite();
+        }
+    }
+
+    //conexão das leituras: a da transação, se houver; senão uma réplica escolhida pelo router, se houver
+    private Connection acquireReadConnection() {
+        if (router != null && DB.currentTransaction() == null) {
+            return router.forRead().borrow();
+        }
+        return acquireConnection();
+    }
+
+    //devolve a conexão usada por uma leitura
+    private void releaseReadConnection(Connection c) {
+        if (pool != null && c != DB.currentTransaction()) {
+            DB.closeConnection(c);
+        }
     }
 
     //método para inserir um novo Seller no Banco de dados
     @Override
     public void insert(Seller obj) {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         try {
             //validação dos dados de entrada de Seller
-            if (obj.getName() == null || obj.getName().trim().isEmpty()) {
-                throw new IllegalArgumentException("Seller name cannot be null or empty.");
-            }
-            if (obj.getEmail() == null || obj.getEmail().trim().isEmpty()) {
-                throw new IllegalArgumentException("Seller email cannot be null or empty.");
-            }
-            if (obj.getDepartment() == null) {
-                throw new IllegalArgumentException("Department cannot be null.");
-            }
-            if (obj.getBaseSalary() <= 0) {
-                throw new IllegalArgumentException("Base salary must be greater than zero.");
-            }
+            validateSeller(obj);
             // Inicia a transação
             conn.setAutoCommit(false);
-            st = conn.prepareStatement("INSERT INTO seller "
-                            + "(Name, Email, BirthDate, BaseSalary, DepartmentId) "
-                            + "VALUES "
-                            + "(?, ?, ?, ?, ?)",
-                            Statement.RETURN_GENERATED_KEYS);
+            long version = reserveVersions(conn, 1);
+            st = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
 
             //substituição dos placeholders
             st.setString(1, obj.getName());
@@ -54,6 +215,7 @@ public class SellerDaoJDBC implements SellerDao {
             st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
             st.setDouble(4, obj.getBaseSalary());
             st.setInt(5, obj.getDepartment().getId());
+            st.setLong(6, version);
 
             //variável recebendo a execução do comando SQL e contabilizando número de linhas afetadas
             int rowsAffected = st.executeUpdate();
@@ -78,6 +240,7 @@ public class SellerDaoJDBC implements SellerDao {
             }
             //confirmação explicita para que as operações sejam executadas
             conn.commit();
+            markPersisted(obj);
             //retorno de sucesso na operação
             System.out.println("Seller inserted successfully! New Id = " + obj.getId());
         }
@@ -85,50 +248,234 @@ public class SellerDaoJDBC implements SellerDao {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
         }
         finally {
             DB.closeStatement(st);
+            releaseConnection(conn);
         }
     }
 
-    //método para atualizar os dados de um Seller no Banco de dados
+    //insere vários Sellers usando lotes (batch) do tamanho padrão
     @Override
-    public void update(Seller obj) {
-        //objeto para executar consultas SQL com parâmetros.
+    public void insertAll(Collection<Seller> list) {
+        insertAll(list, DEFAULT_BATCH_SIZE);
+    }
+
+    /*
+    insere vários Sellers de uma vez. A validação é feita para todos antes de começar, depois as linhas são enviadas
+    em lotes de batchSize, com uma transação por lote, e os ids gerados são atribuídos de volta em cada Seller.
+    Se um lote falhar, só ele sofre rollback: os lotes anteriores já foram confirmados.
+     */
+    @Override
+    public void insertAll(Collection<Seller> list, int batchSize) {
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        //validação de todos os Sellers antes de qualquer ida ao BD
+        for (Seller obj : list) {
+            validateSeller(obj);
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         PreparedStatement st = null;
         try {
-            //validação dos dados de entrada de Seller
-            if (obj.getName() == null || obj.getName().trim().isEmpty()) {
-                throw new IllegalArgumentException("Seller name cannot be null or empty.");
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+
+            //Sellers do lote atual, na mesma ordem em que foram adicionados ao batch
+            List<Seller> chunk = new ArrayList<>(Math.min(batchSize, list.size()));
+            int remaining = list.size();
+            long version = 0;
+            for (Seller obj : list) {
+                if (chunk.isEmpty()) {
+                    //as versões do lote são reservadas de uma vez, na transação do lote
+                    version = reserveVersions(conn, Math.min(batchSize, remaining));
+                }
+                remaining--;
+                st.setString(1, obj.getName());
+                st.setString(2, obj.getEmail());
+                st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
+                st.setDouble(4, obj.getBaseSalary());
+                st.setInt(5, obj.getDepartment().getId());
+                st.setLong(6, rowVersions ? version++ : 0);
+                st.addBatch();
+                chunk.add(obj);
+                if (chunk.size() == batchSize) {
+                    executeInsertBatch(conn, st, chunk);
+                }
             }
-            if (obj.getEmail() == null || obj.getEmail().trim().isEmpty()) {
-                throw new IllegalArgumentException("Seller email cannot be null or empty.");
+            if (!chunk.isEmpty()) {
+                executeInsertBatch(conn, st, chunk);
             }
-            if (obj.getDepartment() == null) {
-                throw new IllegalArgumentException("Department cannot be null.");
+            System.out.println("Sellers inserted successfully! Rows = " + list.size());
+        }
+        catch (SQLException e) {
+            try {
+                //o rollback desfaz apenas o lote que estava em andamento
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
-            if (obj.getBaseSalary() <= 0) {
-                throw new IllegalArgumentException("Base salary must be greater than zero.");
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    //executa o lote, atribui os ids gerados aos Sellers do lote e confirma a transação
+    private void executeInsertBatch(Connection conn, PreparedStatement st, List<Seller> chunk) throws SQLException {
+        st.executeBatch();
+        ResultSet rs = st.getGeneratedKeys();
+        try {
+            int i = 0;
+            while (rs.next() && i < chunk.size()) {
+                chunk.get(i++).setId(rs.getInt(1));
             }
+            if (i < chunk.size()) {
+                throw new SQLException("Unexpected error! Expected " + chunk.size() + " generated keys, got " + i);
+            }
+        }
+        finally {
+            DB.closeResultSet(rs);
+        }
+        conn.commit();
+        for (Seller obj : chunk) {
+            markPersisted(obj);
+        }
+        chunk.clear();
+    }
 
+    /*
+    insere Sellers que já têm id, em lotes de batchSize com uma transação por lote. Um id que já existe
+    faz o lote falhar (chave duplicada), em vez de sobrescrever a linha como o upsert faria.
+     */
+    void insertWithIds(Collection<Seller> list, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        for (Seller obj : list) {
+            validateSeller(obj);
+            if (obj.getId() == null) {
+                throw new IllegalArgumentException("Seller id cannot be null.");
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        PreparedStatement st = null;
+        try {
             conn.setAutoCommit(false);
-            st = conn.prepareStatement(
-                    "UPDATE seller "
-                        + "SET Name = ?, Email = ?, BirthDate = ?, BaseSalary = ?, DepartmentId = ? "
-                        + "WHERE Id = ?");
+            st = conn.prepareStatement(INSERT_WITH_ID_SQL);
+            List<Seller> chunk = new ArrayList<>(Math.min(batchSize, list.size()));
+            int remaining = list.size();
+            long version = 0;
+            for (Seller obj : list) {
+                if (chunk.isEmpty()) {
+                    version = reserveVersions(conn, Math.min(batchSize, remaining));
+                }
+                remaining--;
+                bindUpsert(st, obj, rowVersions ? version++ : 0);
+                st.addBatch();
+                chunk.add(obj);
+                if (chunk.size() == batchSize) {
+                    executeBatchWithIds(conn, st, chunk);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                executeBatchWithIds(conn, st, chunk);
+            }
+            System.out.println("Sellers inserted successfully! Rows = " + list.size());
+        }
+        catch (SQLException e) {
+            try {
+                //o rollback desfaz apenas o lote que estava em andamento
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
 
-            //substituição dos placeholders
-            st.setString(1, obj.getName());
-            st.setString(2, obj.getEmail());
-            st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
-            st.setDouble(4, obj.getBaseSalary());
-            st.setInt(5, obj.getDepartment().getId());
-            st.setInt(6, obj.getId());
+    private void executeBatchWithIds(Connection conn, PreparedStatement st, List<Seller> chunk) throws SQLException {
+        st.executeBatch();
+        conn.commit();
+        for (Seller obj : chunk) {
+            markPersisted(obj);
+        }
+        chunk.clear();
+    }
+
+    /*
+    método para atualizar os dados de um Seller no Banco de dados. Só as colunas alteradas desde que o Seller foi lido
+    (Seller.getChangedFields()) entram no UPDATE, e se nada mudou o BD nem é chamado.
+     */
+    @Override
+    public void update(Seller obj) {
+        //validação dos dados de entrada de Seller
+        validateSeller(obj);
+        EnumSet<Seller.Field> changed = obj.getChangedFields();
+        if (changed.isEmpty()) {
+            System.out.println("Nothing to update for Seller ID: " + obj.getId());
+            return;
+        }
+        int mask = 0;
+        for (Seller.Field field : changed) {
+            mask |= 1 << field.ordinal();
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        //objeto para executar consultas SQL com parâmetros.
+        PreparedStatement st = null;
+        try {
+            conn.setAutoCommit(false);
+            long version = reserveVersions(conn, 1);
+            st = conn.prepareStatement(UPDATE_SQL_BY_SHAPE[mask]);
+
+            //substituição dos placeholders das colunas alteradas, na ordem do SQL
+            int p = 1;
+            for (Seller.Field field : changed) {
+                switch (field) {
+                    case NAME:
+                        st.setString(p++, obj.getName());
+                        break;
+                    case EMAIL:
+                        st.setString(p++, obj.getEmail());
+                        break;
+                    case BIRTH_DATE:
+                        st.setDate(p++, new java.sql.Date(obj.getBirthDate().getTime()));
+                        break;
+                    case BASE_SALARY:
+                        st.setDouble(p++, obj.getBaseSalary());
+                        break;
+                    case DEPARTMENT:
+                        st.setInt(p++, obj.getDepartment().getId());
+                        break;
+                }
+            }
+            st.setLong(p++, version);
+            st.setInt(p, obj.getId());
 
             //Executando o comando SQL
             int rowsAffected = st.executeUpdate();
@@ -136,8 +483,14 @@ public class SellerDaoJDBC implements SellerDao {
             //Confirma a transação se houver linhas afetadas
             if (rowsAffected > 0) {
                 conn.commit(); // Faz o commit explícito da transação
+                markPersisted(obj);
                 System.out.println("Update successful for Seller ID: " + obj.getId());
             } else {
+                //libera o contador de versões travado pelo reserve. Dentro de um DB.inTransaction a conexão não é
+                //do DAO: o rollback desfaria a transação inteira, e quem chamou pode tratar o erro e continuar
+                if (DB.currentTransaction() == null) {
+                    conn.rollback();
+                }
                 throw new DbException("No rows affected. Seller ID may not exist: " + obj.getId());
             }
         }
@@ -145,14 +498,261 @@ public class SellerDaoJDBC implements SellerDao {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
         }
         finally {
             DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    /*
+    atualiza vários Sellers enviando os UPDATEs em lotes de DEFAULT_BATCH_SIZE, com uma transação por lote.
+    A validação é feita para todos antes de começar; se algum id não existir o lote dele sofre rollback.
+     */
+    @Override
+    public void updateAll(Collection<Seller> list) {
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        for (Seller obj : list) {
+            validateSeller(obj);
+            if (obj.getId() == null) {
+                throw new IllegalArgumentException("Seller id cannot be null.");
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        PreparedStatement st = null;
+        try {
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(UPDATE_SQL);
+
+            //Sellers do lote atual, na mesma ordem em que foram adicionados ao batch
+            List<Seller> chunk = new ArrayList<>(Math.min(DEFAULT_BATCH_SIZE, list.size()));
+            int remaining = list.size();
+            long version = 0;
+            for (Seller obj : list) {
+                if (chunk.isEmpty()) {
+                    version = reserveVersions(conn, Math.min(DEFAULT_BATCH_SIZE, remaining));
+                }
+                remaining--;
+                st.setString(1, obj.getName());
+                st.setString(2, obj.getEmail());
+                st.setDate(3, new java.sql.Date(obj.getBirthDate().getTime()));
+                st.setDouble(4, obj.getBaseSalary());
+                st.setInt(5, obj.getDepartment().getId());
+                st.setLong(6, rowVersions ? version++ : 0);
+                st.setInt(7, obj.getId());
+                st.addBatch();
+                chunk.add(obj);
+                if (chunk.size() == DEFAULT_BATCH_SIZE) {
+                    executeUpdateBatch(conn, st, chunk);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                executeUpdateBatch(conn, st, chunk);
+            }
+            System.out.println("Sellers updated successfully! Rows = " + list.size());
+        }
+        catch (SQLException | DbException e) {
+            try {
+                //o rollback desfaz apenas o lote que estava em andamento
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    /*
+    executa o lote de UPDATEs e confirma a transação. Um contador 0 indica id inexistente; o driver pode devolver
+    SUCCESS_NO_INFO quando reescreve o lote (rewriteBatchedStatements), e nesse caso não há o que conferir.
+     */
+    private void executeUpdateBatch(Connection conn, PreparedStatement st, List<Seller> chunk) throws SQLException {
+        int[] counts = st.executeBatch();
+        for (int i = 0; i < counts.length && i < chunk.size(); i++) {
+            if (counts[i] == 0) {
+                throw new DbException("No rows affected. Seller ID may not exist: " + chunk.get(i).getId());
+            }
+        }
+        conn.commit();
+        for (Seller obj : chunk) {
+            markPersisted(obj);
+        }
+        chunk.clear();
+    }
+
+    /*
+    insere o Seller ou, se já existir uma linha com o id dele, atualiza essa linha, em uma única ida ao BD
+    (seller sem id é sempre inserido). Retorna o que foi feito; o id gerado é atribuído no objeto.
+     */
+    @Override
+    public UpsertResult upsert(Seller obj) {
+        validateSeller(obj);
+        //sem id não há linha para atualizar
+        if (obj.getId() == null) {
+            insert(obj);
+            return UpsertResult.INSERTED;
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
+        PreparedStatement st = null;
+        try {
+            conn.setAutoCommit(false);
+            SqlDialect dialect = dialect(conn);
+            //o H2 não informa se a linha existia: consulta antes, na mesma transação
+            boolean existed = dialect == SqlDialect.H2 && exists(conn, obj.getId());
+            long version = reserveVersions(conn, 1);
+            st = conn.prepareStatement(upsertSql, Statement.RETURN_GENERATED_KEYS);
+            bindUpsert(st, obj, version);
+            int rowsAffected = st.executeUpdate();
+            if (dialect == SqlDialect.MYSQL) {
+                //2 = linha existente alterada; com 1, só o insert devolve o id como chave gerada
+                existed = rowsAffected == 2;
+                if (!existed) {
+                    ResultSet rs = st.getGeneratedKeys();
+                    try {
+                        existed = !(rs.next() && rs.getInt(1) == obj.getId());
+                    }
+                    finally {
+                        DB.closeResultSet(rs);
+                    }
+                }
+            }
+            conn.commit();
+            markPersisted(obj);
+            UpsertResult result = existed ? UpsertResult.UPDATED : UpsertResult.INSERTED;
+            System.out.println("Seller upserted successfully! Id = " + obj.getId() + " (" + result + ")");
+            return result;
+        }
+        catch (SQLException e) {
+            try {
+                //o rollback faz com que a transação volte caso tenha parado no meio.
+                conn.rollback();
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+            } catch (SQLException ex) {
+                //em caso de erro no rollback
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+            }
+        }
+        finally {
+            DB.closeStatement(st);
+            releaseConnection(conn);
+        }
+    }
+
+    /*
+    upsert de vários Sellers: os que têm id vão em lotes de DEFAULT_BATCH_SIZE com o upsert do banco, uma transação
+    por lote, e os sem id são inseridos pelo insertAll, que atribui os ids gerados.
+     */
+    @Override
+    public void upsertAll(Collection<Seller> list) {
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        List<Seller> withId = new ArrayList<>();
+        List<Seller> withoutId = new ArrayList<>();
+        for (Seller obj : list) {
+            validateSeller(obj);
+            (obj.getId() != null ? withId : withoutId).add(obj);
+        }
+        if (!withId.isEmpty()) {
+            //pega uma conexão emprestada do pool, devolvida no finally
+            Connection conn = acquireConnection();
+            PreparedStatement st = null;
+            try {
+                conn.setAutoCommit(false);
+                dialect(conn);
+                st = conn.prepareStatement(upsertSql);
+                int pending = 0;
+                int remaining = withId.size();
+                long version = 0;
+                for (Seller obj : withId) {
+                    if (pending == 0) {
+                        version = reserveVersions(conn, Math.min(DEFAULT_BATCH_SIZE, remaining));
+                    }
+                    remaining--;
+                    bindUpsert(st, obj, rowVersions ? version++ : 0);
+                    st.addBatch();
+                    if (++pending == DEFAULT_BATCH_SIZE) {
+                        st.executeBatch();
+                        conn.commit();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    st.executeBatch();
+                    conn.commit();
+                }
+            }
+            catch (SQLException e) {
+                try {
+                    //o rollback desfaz apenas o lote que estava em andamento
+                    conn.rollback();
+                    throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
+                } catch (SQLException ex) {
+                    //em caso de erro no rollback
+                    throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
+                }
+            }
+            finally {
+                DB.closeStatement(st);
+                releaseConnection(conn);
+            }
+        }
+        if (!withoutId.isEmpty()) {
+            insertAll(withoutId);
+        }
+        System.out.println("Sellers upserted successfully! Rows = " + list.size());
+    }
+
+    //identifica o banco na primeira chamada e monta o comando de upsert dele
+    private SqlDialect dialect(Connection conn) throws SQLException {
+        SqlDialect d = dialect;
+        if (d == null) {
+            d = SqlDialect.of(conn);
+            upsertSql = d.upsert("seller", "Id", "Name", "Email", "BirthDate", "BaseSalary", "DepartmentId",
+                    "RowVersion");
+            dialect = d;
+        }
+        return d;
+    }
+
+    private void bindUpsert(PreparedStatement st, Seller obj, long version) throws SQLException {
+        st.setInt(1, obj.getId());
+        st.setString(2, obj.getName());
+        st.setString(3, obj.getEmail());
+        st.setDate(4, new java.sql.Date(obj.getBirthDate().getTime()));
+        st.setDouble(5, obj.getBaseSalary());
+        st.setInt(6, obj.getDepartment().getId());
+        st.setLong(7, version);
+    }
+
+    private boolean exists(Connection conn, int id) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("SELECT 1 FROM seller WHERE Id = ? FOR UPDATE");
+        ResultSet rs = null;
+        try {
+            st.setInt(1, id);
+            rs = st.executeQuery();
+            return rs.next();
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
         }
     }
 
@@ -163,11 +763,14 @@ public class SellerDaoJDBC implements SellerDao {
         if (id == null || id <=0) {
             throw new DbException("Invalid Id: " + id);
         }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         try {
             // Inicia a transação
             conn.setAutoCommit(false);
+            long version = reserveVersions(conn, 1);
             st = conn.prepareStatement("DELETE FROM seller WHERE Id = ?");
             //substituindo o placeholder
             st.setInt(1, id);
@@ -175,8 +778,17 @@ public class SellerDaoJDBC implements SellerDao {
             int rows = st.executeUpdate();
             //verifica se o id não foi encontrado
             if (rows == 0) {
+                //libera o contador de versões travado pelo reserve. Dentro de um DB.inTransaction a conexão não é
+                //do DAO: o rollback desfaria a transação inteira, e quem chamou pode tratar o erro e continuar
+                if (DB.currentTransaction() == null) {
+                    conn.rollback();
+                }
                 throw new DbException("Error! Id not found");
             }
+            //o id apagado entra no feed do findModifiedSince
+            if (rowVersions) {
+                RowVersions.tombstone(conn, dialect(conn), RowVersions.SELLER, id, version);
+            }
             //confirmação explicita para que as operações sejam executadas
             conn.commit();
             System.out.println("Seller deleted sucessfully! Deleted Seller ID = " + id);
@@ -185,14 +797,15 @@ public class SellerDaoJDBC implements SellerDao {
             try {
                 //o rollback faz com que a transação volte caso tenha parado no meio.
                 conn.rollback();
-                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage());
+                throw new DbException("Transaction rolled back! Caused by: " + e.getMessage(), e);
             } catch (SQLException ex) {
                 //em caso de erro no rollback
-                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage());
+                throw new DbException("Error trying to rollback! Caused by: " + ex.getMessage(), ex);
             }
         }
         finally {
             DB.closeStatement(st);
+            releaseConnection(conn);
         }
     }
 
@@ -203,6 +816,8 @@ public class SellerDaoJDBC implements SellerDao {
         if (id == null || id <=0) {
             throw new DbException("Invalid Id: " + id);
         }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         //armazena e manipula os resultados da consulta SQL feitas pelo PreparedStatement
@@ -218,6 +833,7 @@ public class SellerDaoJDBC implements SellerDao {
 
             //rs recebe o resultado da execução da consulta
             rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
 
             /*
             o resultset traz resultados em forma de tabela, como usamos POO, a lógica abaixo cria um objeto do tipo Seller
@@ -229,44 +845,117 @@ public class SellerDaoJDBC implements SellerDao {
              */
             if (rs.next()) {
                 //instanciando departamento
-                Department dep = instantiateDepartment(rs);
+                Department dep = mapper.department(rs, mapper.departmentId(rs));
                 //instanciando vendedor
-                Seller obj = instantiateSeller(rs, dep);
+                Seller obj = mapper.seller(rs, dep);
                 return obj;
             }
             return null;
         }
         catch (SQLException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
         }
         //fechamento dos recursos
         finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+    /*
+    marca o Seller gravado como limpo, para o próximo update enviar só o que mudar depois disso. Dentro de um
+    DB.inTransaction a gravação ainda pode ser desfeita, então o Seller continua com as alterações pendentes.
+     */
+    private static void markPersisted(Seller obj) {
+        if (DB.currentTransaction() == null) {
+            obj.markClean();
         }
     }
-    //método pra instanciar department e poder reusar esse método quando necessário
-    private Department instantiateDepartment(ResultSet rs) throws SQLException {
-        Department dep = new Department();
-        dep.setId(rs.getInt("DepartmentId"));
-        dep.setName(rs.getString("DepName"));
-        return dep;
+
+    //validação dos dados de entrada de Seller, usada pelas escritas deste DAO e pelo WriteBehindSellerDao
+    static void validateSeller(Seller obj) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Seller cannot be null.");
+        }
+        if (obj.getName() == null || obj.getName().trim().isEmpty()) {
+            throw new IllegalArgumentException("Seller name cannot be null or empty.");
+        }
+        if (obj.getEmail() == null || obj.getEmail().trim().isEmpty()) {
+            throw new IllegalArgumentException("Seller email cannot be null or empty.");
+        }
+        if (obj.getDepartment() == null) {
+            throw new IllegalArgumentException("Department cannot be null.");
+        }
+        if (obj.getBaseSalary() <= 0) {
+            throw new IllegalArgumentException("Base salary must be greater than zero.");
+        }
     }
-    //método pra instanciar seller e poder reusar esse método quando necessário
-    private Seller instantiateSeller(ResultSet rs, Department dep) throws SQLException {
-        Seller obj = new Seller();
-        obj.setId(rs.getInt("Id"));
-        obj.setName(rs.getString("Name"));
-        obj.setEmail(rs.getString("Email"));
-        obj.setBaseSalary(rs.getDouble("BaseSalary"));
-        obj.setBirthDate(rs.getDate("BirthDate"));
-        obj.setDepartment(dep);
-        return obj;
+
+    /*
+    busca vários Sellers de uma vez, com consultas WHERE seller.Id IN (...) de até IdChunks.MAX_CHUNK ids cada.
+    Retorna um map id -> Seller na ordem dos ids recebidos; ids que não existem ficam fora do map.
+     */
+    @Override
+    public Map<Integer, Seller> findByIds(Collection<Integer> ids) {
+        List<Integer> distinct = IdChunks.distinct(ids);
+        Map<Integer, Seller> found = new HashMap<>(distinct.size() * 2);
+        if (distinct.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            //map pra guardar qualquer department e auxiliar no controle de instancias do Department
+            Map<Integer, Department> map = new HashMap<>();
+            for (int from = 0; from < distinct.size(); from += IdChunks.MAX_CHUNK) {
+                List<Integer> chunk = distinct.subList(from, Math.min(from + IdChunks.MAX_CHUNK, distinct.size()));
+                int size = IdChunks.paddedSize(chunk.size());
+                st = conn.prepareStatement(SELECT_SQL + "WHERE seller.Id IN (" + IdChunks.placeholders(size) + ")");
+                IdChunks.bind(st, 1, chunk, size);
+                rs = st.executeQuery();
+                SellerRowMapper mapper = new SellerRowMapper(rs);
+                while (rs.next()) {
+                    int depId = mapper.departmentId(rs);
+                    Department dep = map.get(depId);
+                    if (dep == null) {
+                        dep = mapper.department(rs, depId);
+                        map.put(depId, dep);
+                    }
+                    Seller obj = mapper.seller(rs, dep);
+                    found.put(obj.getId(), obj);
+                }
+                DB.closeResultSet(rs);
+                DB.closeStatement(st);
+                rs = null;
+                st = null;
+            }
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        //fechamento dos recursos
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+        Map<Integer, Seller> result = new LinkedHashMap<>(found.size() * 2);
+        for (Integer id : distinct) {
+            Seller obj = found.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
     }
 
     //método para consultar e listar os Sellers ordenados por nome
     @Override
     public List<Seller> findAll() {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         //armazena e manipula os resultados da consulta SQL feitas pelo PreparedStatement
@@ -280,6 +969,7 @@ public class SellerDaoJDBC implements SellerDao {
 
             //rs recebe o resultado da execução da consulta
             rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
 
             List<Seller> list = new ArrayList<>();
             //map pra guardar qualquer department e auxiliar no controle de instancias do Department
@@ -293,28 +983,30 @@ public class SellerDaoJDBC implements SellerDao {
             */
             while (rs.next()) {
                 //busca no map se existe algum department com o mesmo id, se existir, eu uso, se não, é igual a null
-                Department dep = map.get(rs.getInt("DepartmentId"));
+                int depId = mapper.departmentId(rs);
+                Department dep = map.get(depId);
 
                 //lógica para instanciar department caso não exista map com esse id instanciado
                 if (dep == null) {
                     //instanciando departamento
-                    dep = instantiateDepartment(rs);
+                    dep = mapper.department(rs, depId);
                     //salva o department no map
-                    map.put(rs.getInt("DepartmentId"), dep);
+                    map.put(depId, dep);
                 }
                 //instanciando vendedor
-                Seller obj = instantiateSeller(rs, dep);
+                Seller obj = mapper.seller(rs, dep);
                 list.add(obj);
             }
             return list;
         }
         catch (SQLException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
         }
         //fechamento dos recursos
         finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            releaseReadConnection(conn);
         }
     }
 
@@ -325,6 +1017,8 @@ public class SellerDaoJDBC implements SellerDao {
         if (department == null) {
             throw new IllegalArgumentException("Department cannot be null.");
         }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
         //objeto para executar consultas SQL com parâmetros.
         PreparedStatement st = null;
         //armazena e manipula os resultados da consulta SQL feitas pelo PreparedStatement
@@ -341,6 +1035,7 @@ public class SellerDaoJDBC implements SellerDao {
 
             //rs recebe o resultado da execução da consulta
             rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
 
             List<Seller> list = new ArrayList<>();
             //map pra guardar qualquer department e auxiliar no controle de instancias do Department
@@ -354,17 +1049,18 @@ public class SellerDaoJDBC implements SellerDao {
             */
             while (rs.next()) {
                 //busca no map se existe algum department com o mesmo id, se não existir é igual a null
-                Department dep = map.get(rs.getInt("DepartmentId"));
+                int depId = mapper.departmentId(rs);
+                Department dep = map.get(depId);
 
                 //lógica para instanciar department caso não exista map com esse id instanciado
                 if (dep == null) {
                     //instanciando departamento
-                    dep = instantiateDepartment(rs);
+                    dep = mapper.department(rs, depId);
                     //salva o department no map
-                    map.put(rs.getInt("DepartmentId"), dep);
+                    map.put(depId, dep);
                 }
                 //instanciando vendedor
-                Seller obj = instantiateSeller(rs, dep);
+                Seller obj = mapper.seller(rs, dep);
                 list.add(obj);
             }
             //Verifica se a lista está vazia
@@ -374,12 +1070,605 @@ public class SellerDaoJDBC implements SellerDao {
             return list;
         }
         catch (SQLException e) {
-            throw new DbException(e.getMessage());
+            throw new DbException(e.getMessage(), e);
         }
         //fechamento dos recursos
         finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+
+    //página de Sellers ordenados por nome, usando paginação por chave (Name, Id)
+    @Override
+    public Page<Seller> findPage(PageCursor cursor, int limit) {
+        return findPage(null, cursor, limit);
+    }
+
+    //página de Sellers de um department ordenados por nome, usando paginação por chave (Name, Id)
+    @Override
+    public Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        if (department == null) {
+            throw new IllegalArgumentException("Department cannot be null.");
+        }
+        return findPage(department.getId(), cursor, limit);
+    }
+
+    /*
+    busca limit + 1 linhas depois do cursor: a linha extra só serve para saber se existe próxima página.
+    Com um índice em (Name, Id) ou (DepartmentId, Name, Id) o custo é o mesmo para qualquer página.
+     */
+    private Page<Seller> findPage(Integer departmentId, PageCursor cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append("WHERE 1 = 1 ");
+        if (departmentId != null) {
+            sql.append("AND seller.DepartmentId = ? ");
+        }
+        if (cursor != null) {
+            sql.append("AND (seller.Name > ? OR (seller.Name = ? AND seller.Id > ?)) ");
+        }
+        sql.append("ORDER BY seller.Name, seller.Id LIMIT ?");
+
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(sql.toString());
+            int i = 1;
+            if (departmentId != null) {
+                st.setInt(i++, departmentId);
+            }
+            if (cursor != null) {
+                st.setString(i++, cursor.getName());
+                st.setString(i++, cursor.getName());
+                st.setInt(i++, cursor.getId());
+            }
+            st.setInt(i, limit + 1);
+            rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
+
+            List<Seller> list = new ArrayList<>(Math.min(limit, 1000));
+            //map pra guardar qualquer department e auxiliar no controle de instancias do Department
+            Map<Integer, Department> map = new HashMap<>();
+            boolean hasNext = false;
+            while (rs.next()) {
+                if (list.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                int depId = mapper.departmentId(rs);
+                Department dep = map.get(depId);
+                if (dep == null) {
+                    dep = mapper.department(rs, depId);
+                    map.put(depId, dep);
+                }
+                list.add(mapper.seller(rs, dep));
+            }
+            PageCursor next = null;
+            if (hasNext) {
+                Seller last = list.get(list.size() - 1);
+                next = new PageCursor(last.getName(), last.getId());
+            }
+            return new Page<>(list, next);
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        //fechamento dos recursos
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+
+    //Stream de todos os Sellers ordenados por nome, lido direto do ResultSet
+    @Override
+    public Stream<Seller> streamAll() {
+        return stream(SELECT_SQL + "ORDER BY Name", null);
+    }
+
+    /*
+    lê todos os Sellers direto do cursor (fetchSize linhas por vez) para uma SellerTable. A ordem é por id, que é
+    a ordem da chave primária e não exige ordenação no BD.
+     */
+    @Override
+    public SellerTable findAllAsTable() {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(SELECT_SQL + "ORDER BY seller.Id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            st.setFetchSize(fetchSize);
+            rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
+            SellerTable.Builder table = new SellerTable.Builder();
+            while (rs.next()) {
+                mapper.addTo(table, rs);
+            }
+            return table.build();
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+        }
+    }
+
+    /*
+    exporta todos os Sellers em ordem de id direto do cursor (fetchSize linhas por vez) para o arquivo, sem criar um
+    Seller por linha. O arquivo é escrito em um temporário na mesma pasta e só substitui o destino no final, então
+    quem lê o arquivo nunca vê um export pela metade. Retorna a quantidade de linhas exportadas.
+     */
+    @Override
+    public long exportAll(ExportFormat format, Path file) {
+        if (format == null) {
+            throw new IllegalArgumentException("Export format cannot be null.");
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null.");
+        }
+        Path target = file.toAbsolutePath();
+        Path temp;
+        try {
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        }
+        catch (IOException e) {
+            throw new DbException("Error creating export file: " + e.getMessage(), e);
+        }
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        boolean moved = false;
+        try {
+            long rows;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                st = conn.prepareStatement(SELECT_SQL + "ORDER BY seller.Id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                st.setFetchSize(fetchSize);
+                rs = st.executeQuery();
+                SellerRowMapper mapper = new SellerRowMapper(rs);
+                try (SellerExportWriter writer = new SellerExportWriter(channel, format)) {
+                    while (rs.next()) {
+                        mapper.writeTo(writer, rs);
+                    }
+                    rows = writer.getRows();
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+            return rows;
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        catch (IOException e) {
+            throw new DbException("Error writing export file: " + e.getMessage(), e);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+            if (!moved) {
+                try {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException e) {
+                    //o temporário fica para trás, mas o erro original é o que interessa
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment() {
+        return findSalaryStatsByDepartment(null, null);
+    }
+
+    /*
+    agrupa os salários por department no próprio BD (COUNT/SUM/MIN/MAX) e traz só uma linha por department,
+    em ordem de nome. O filtro de data entra no WHERE apenas quando informado, então existem até quatro formatos de
+    SQL, cada um reaproveitado pelo cache de PreparedStatement.
+     */
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        if (birthFrom != null && birthTo != null && birthFrom.after(birthTo)) {
+            throw new IllegalArgumentException("Birth date range start cannot be after its end.");
+        }
+        StringBuilder sql = new StringBuilder("SELECT seller.DepartmentId, department.Name as DepName, "
+                + "COUNT(*), SUM(seller.BaseSalary), MIN(seller.BaseSalary), MAX(seller.BaseSalary) "
+                + "FROM seller INNER JOIN department "
+                + "ON seller.DepartmentId = department.Id ");
+        if (birthFrom != null) {
+            sql.append("WHERE seller.BirthDate >= ? ");
+        }
+        if (birthTo != null) {
+            sql.append(birthFrom != null ? "AND " : "WHERE ").append("seller.BirthDate <= ? ");
+        }
+        sql.append("GROUP BY seller.DepartmentId, department.Name ORDER BY department.Name");
+
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(sql.toString());
+            int p = 1;
+            if (birthFrom != null) {
+                st.setDate(p++, new java.sql.Date(birthFrom.getTime()));
+            }
+            if (birthTo != null) {
+                st.setDate(p, new java.sql.Date(birthTo.getTime()));
+            }
+            rs = st.executeQuery();
+            List<SalaryStats> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new SalaryStats(rs.getInt(1), rs.getString(2), rs.getLong(3),
+                        rs.getDouble(4), rs.getDouble(5), rs.getDouble(6)));
+            }
+            return list;
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+        }
+    }
+
+    //Stream dos Sellers de um department ordenados por nome, lido direto do ResultSet
+    @Override
+    public Stream<Seller> streamByDepartment(Department department) {
+        if (department == null) {
+            throw new IllegalArgumentException("Department cannot be null.");
+        }
+        return stream(SELECT_SQL + "WHERE DepartmentId = ? ORDER BY Name", department.getId());
+    }
+
+    //percorre todos os Sellers sem montar a lista, fechando o cursor no final
+    @Override
+    public void forEach(Consumer<Seller> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        try (Stream<Seller> stream = streamAll()) {
+            stream.forEach(action);
+        }
+    }
+
+    /*
+    lê todos os Sellers dividindo os ids em faixas lidas ao mesmo tempo, em até parallelism conexões. As faixas vêm
+    em ordem de id; com orderByName a lista montada é ordenada uma vez aqui pelo SellerOrder (nome e, no empate, id),
+    sem depender de a collation do BD ser igual à ordem do Java.
+     */
+    @Override
+    public List<Seller> findAllParallel(int parallelism, boolean orderByName) {
+        List<List<Seller>> ranges = scanRanges(parallelism, "ORDER BY seller.Id", null);
+        int total = 0;
+        for (List<Seller> range : ranges) {
+            total += range.size();
+        }
+        List<Seller> list = new ArrayList<>(total);
+        for (List<Seller> range : ranges) {
+            list.addAll(range);
+        }
+        if (orderByName) {
+            list.sort(SellerOrder.BY_NAME_AND_ID);
+        }
+        return list;
+    }
+
+    //scan paralelo sem ordem e sem montar a lista: a action é chamada por várias threads ao mesmo tempo
+    @Override
+    public void forEachParallel(int parallelism, Consumer<Seller> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        scanRanges(parallelism, "", action);
+    }
+
+    /*
+    feed de alterações: até limit sellers gravados e ids apagados depois do token, em ordem de versão, usando os
+    índices de RowVersion da seller e da seller_tombstone. Token null começa do início da tabela.
+     */
+    @Override
+    public Changes<Seller> findModifiedSince(ChangeToken since, int limit) {
+        long version = RowVersions.since(since, 0, 1);
+        return RowVersions.page(changesSince(version, limit), limit, version);
+    }
+
+    /*
+    até limit + 1 alterações depois da versão since, já intercaladas por versão; o item a mais indica que existem
+    mais. Usado também pelo ShardedSellerDao, que junta o feed de cada shard. As duas consultas param na versão
+    confirmada lida antes delas (RowVersions.current), para não pular o que for gravado entre uma e outra.
+     */
+    List<RowVersions.Change<Seller>> changesSince(long since, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        checkRowVersions();
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            long until = RowVersions.current(conn, RowVersions.SELLER);
+            st = conn.prepareStatement(SELECT_SQL
+                    + "WHERE seller.RowVersion > ? AND seller.RowVersion <= ? ORDER BY seller.RowVersion LIMIT ?");
+            st.setLong(1, since);
+            st.setLong(2, until);
+            st.setInt(3, limit + 1);
+            rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
+            int rowVersion = rs.findColumn("RowVersion");
+            List<RowVersions.Change<Seller>> changed = new ArrayList<>();
+            while (rs.next()) {
+                Seller obj = mapper.seller(rs, mapper.department(rs, mapper.departmentId(rs)));
+                changed.add(new RowVersions.Change<>(rs.getLong(rowVersion), obj.getId(), obj));
+            }
+            List<RowVersions.Change<Seller>> deleted =
+                    RowVersions.deletedSince(conn, RowVersions.SELLER, since, until, limit + 1);
+            return RowVersions.merge(changed, deleted, limit + 1);
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            releaseReadConnection(conn);
+        }
+    }
+
+    /*
+    divide [MIN(Id), MAX(Id)] em faixas e distribui entre as threads, cada uma com a sua conexão do pool (ou da
+    réplica escolhida pelo router). As threads pegam a próxima faixa livre ao terminar a anterior. Com action as
+    linhas vão direto para ela e o retorno tem listas vazias; sem action cada faixa vira uma lista, na ordem das faixas.
+
+    Sem pool (conexão fixa) ou dentro de um DB.inTransaction as faixas são lidas uma a uma na thread atual, já que
+    só existe uma conexão.
+     */
+    private List<List<Seller>> scanRanges(int parallelism, String orderBy, Consumer<Seller> action) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero.");
+        }
+        int[] bounds = idBounds();
+        if (bounds == null) {
+            return new ArrayList<>();
+        }
+        int workers = pool != null && DB.currentTransaction() == null ? Math.min(parallelism, pool.getMaxSize()) : 1;
+        long span = (long) bounds[1] - bounds[0] + 1;
+        int count = (int) Math.min(span, (long) workers * RANGES_PER_WORKER);
+        List<List<Seller>> results = new ArrayList<>(Collections.<List<Seller>>nCopies(count, null));
+        if (workers == 1) {
+            for (int i = 0; i < count; i++) {
+                results.set(i, scanRange(rangeStart(bounds[0], span, count, i),
+                        rangeStart(bounds[0], span, count, i + 1) - 1, orderBy, action));
+            }
+            return results;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        DbExecutor executor = new DbExecutor(workers);
+        try {
+            List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                running.add(executor.run(() -> {
+                    int i;
+                    while (!failed.get() && (i = next.getAndIncrement()) < count) {
+                        try {
+                            results.set(i, scanRange(rangeStart(bounds[0], span, count, i),
+                                    rangeStart(bounds[0], span, count, i + 1) - 1, orderBy, action));
+                        }
+                        catch (RuntimeException e) {
+                            //as outras threads param depois da faixa em andamento
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            RuntimeException failure = null;
+            for (CompletableFuture<Void> worker : running) {
+                try {
+                    worker.join();
+                }
+                catch (CompletionException e) {
+                    RuntimeException cause = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new DbException(String.valueOf(e.getCause()));
+                    if (failure == null) {
+                        failure = cause;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    //primeiro id da faixa i entre count faixas de [min, min + span)
+    private static long rangeStart(int min, long span, int count, int i) {
+        return min + span * i / count;
+    }
+
+    //menor e maior id da tabela seller, ou null se ela estiver vazia
+    private int[] idBounds() {
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement("SELECT MIN(Id), MAX(Id) FROM seller");
+            rs = st.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            int min = rs.getInt(1);
+            return rs.wasNull() ? null : new int[]{min, rs.getInt(2)};
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+        }
+    }
+
+    //lê os Sellers com id entre from e to (inclusive), entregando para a action ou devolvendo em uma lista
+    private List<Seller> scanRange(long from, long to, String orderBy, Consumer<Seller> action) {
+        //pega uma conexão emprestada do pool, devolvida no finally
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(SELECT_SQL + "WHERE seller.Id BETWEEN ? AND ? " + orderBy,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            st.setFetchSize(fetchSize);
+            st.setInt(1, (int) from);
+            st.setInt(2, (int) to);
+            rs = st.executeQuery();
+            SellerRowMapper mapper = new SellerRowMapper(rs);
+            List<Seller> list = new ArrayList<>();
+            Map<Integer, Department> map = new HashMap<>();
+            while (rs.next()) {
+                int depId = mapper.departmentId(rs);
+                Department dep = map.get(depId);
+                if (dep == null) {
+                    dep = mapper.department(rs, depId);
+                    map.put(depId, dep);
+                }
+                Seller obj = mapper.seller(rs, dep);
+                if (action != null) {
+                    action.accept(obj);
+                }
+                else {
+                    list.add(obj);
+                }
+            }
+            return list;
+        }
+        catch (SQLException e) {
+            throw new DbException(e.getMessage(), e);
+        }
+        finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+        }
+    }
+
+    /*
+    abre um ResultSet somente leitura e só para frente e devolve um Stream que lê uma linha por vez.
+    A conexão fica emprestada até o Stream ser fechado ou chegar ao fim.
+     */
+    private Stream<Seller> stream(String sql, Integer departmentId) {
+        //pega uma conexão emprestada do pool, devolvida quando o cursor for fechado
+        Connection conn = acquireReadConnection();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        SellerRowMapper mapper;
+        try {
+            st = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            st.setFetchSize(fetchSize);
+            if (departmentId != null) {
+                st.setInt(1, departmentId);
+            }
+            rs = st.executeQuery();
+            mapper = new SellerRowMapper(rs);
+        }
+        catch (SQLException e) {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            releaseReadConnection(conn);
+            throw new DbException(e.getMessage(), e);
+        }
+        SellerCursor cursor = new SellerCursor(conn, st, rs, mapper);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    //percorre o ResultSet transformando cada linha em Seller, com um único Department por id
+    private class SellerCursor extends Spliterators.AbstractSpliterator<Seller> {
+        private final Connection conn;
+        private final PreparedStatement st;
+        private final ResultSet rs;
+        private final SellerRowMapper mapper;
+        //map pra guardar qualquer department e auxiliar no controle de instancias do Department
+        private final Map<Integer, Department> map = new HashMap<>();
+        private boolean closed = false;
+
+        SellerCursor(Connection conn, PreparedStatement st, ResultSet rs, SellerRowMapper mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.st = st;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Seller> action) {
+            if (closed) {
+                return false;
+            }
+            Seller obj;
+            try {
+                if (!rs.next()) {
+                    //fim do cursor: libera os recursos sem esperar o close do Stream
+                    close();
+                    return false;
+                }
+                int depId = mapper.departmentId(rs);
+                Department dep = map.get(depId);
+                if (dep == null) {
+                    dep = mapper.department(rs, depId);
+                    map.put(depId, dep);
+                }
+                obj = mapper.seller(rs, dep);
+            }
+            catch (SQLException e) {
+                close();
+                throw new DbException(e.getMessage(), e);
+            }
+            action.accept(obj);
+            return true;
+        }
+
+        //fecha ResultSet e Statement e devolve a conexão, pode ser chamado mais de uma vez
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                DB.closeResultSet(rs);
+                DB.closeStatement(st);
+            }
+            finally {
+                releaseReadConnection(conn);
+            }
         }
     }
 }
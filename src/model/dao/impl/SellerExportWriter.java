@@ -0,0 +1,243 @@
+package model.dao.impl;
+
+import model.dao.ExportFormat;
+import model.dao.SellerTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+escreve as linhas do export em um FileChannel usando dois ByteBuffers diretos: enquanto uma thread própria grava um
+buffer cheio no arquivo, a thread do export preenche o outro com as próximas linhas do ResultSet. Assim a leitura do
+BD e a escrita em disco acontecem ao mesmo tempo, e a memória usada é sempre a dos dois buffers, seja qual for o
+tamanho da tabela.
+ */
+final class SellerExportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    //maior quantidade de bytes UTF-8 por char de uma String (chars fora do BMP usam 4 bytes em 2 chars)
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    //marca de fim da fila para a thread de escrita
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    private static final byte[] MAGIC = {'S', 'E', 'L', 'R'};
+    private static final int VERSION = 1;
+    private static final String CSV_HEADER = "Id,Name,Email,BirthDate,BaseSalary,DepartmentId,DepartmentName\n";
+
+    private final FileChannel channel;
+    private final ExportFormat format;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(3);
+    private final Thread writer;
+    private volatile IOException failure = null;
+    private ByteBuffer current;
+    private long rows = 0;
+    private boolean closed = false;
+
+    SellerExportWriter(FileChannel channel, ExportFormat format) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        this.current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        writer = new Thread(this::drain, "seller-export-writer");
+        writer.setDaemon(true);
+        writer.start();
+        if (format == ExportFormat.CSV) {
+            putAscii(CSV_HEADER);
+        }
+        else {
+            ensure(MAGIC.length + 4);
+            current.put(MAGIC).putInt(VERSION);
+        }
+    }
+
+    //birthEpochDay em dias desde 1970-01-01, ou SellerTable.NO_DATE
+    void row(int id, String name, String email, int birthEpochDay, double baseSalary, int departmentId,
+             String departmentName) throws IOException {
+        if (format == ExportFormat.CSV) {
+            putAscii(Integer.toString(id));
+            putByte(',');
+            putCsv(name);
+            putByte(',');
+            putCsv(email);
+            putByte(',');
+            if (birthEpochDay != SellerTable.NO_DATE) {
+                putAscii(LocalDate.ofEpochDay(birthEpochDay).toString());
+            }
+            putByte(',');
+            putAscii(BigDecimal.valueOf(baseSalary).toPlainString());
+            putByte(',');
+            putAscii(Integer.toString(departmentId));
+            putByte(',');
+            putCsv(departmentName);
+            putByte('\n');
+        }
+        else {
+            //o registro inteiro precisa caber no buffer para o tamanho ser escrito no início dele
+            ensure(4 + 4 + 4 + 8 + 4 + maxText(name) + maxText(email) + maxText(departmentName));
+            int start = current.position();
+            current.putInt(0);
+            current.putInt(id);
+            putText(name);
+            putText(email);
+            current.putInt(birthEpochDay);
+            current.putDouble(baseSalary);
+            current.putInt(departmentId);
+            putText(departmentName);
+            current.putInt(start, current.position() - start - 4);
+        }
+        rows++;
+    }
+
+    //bytes do cabeçalho do arquivo, para juntar exports sem repetir o cabeçalho
+    static int headerLength(ExportFormat format) {
+        return format == ExportFormat.CSV ? CSV_HEADER.length() : MAGIC.length + 4;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    //grava o que restou no buffer, espera a thread de escrita e força os dados para o disco
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            current.flip();
+            full.put(current);
+            full.put(END);
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing the export");
+        }
+        checkFailure();
+        channel.force(false);
+    }
+
+    //texto do CSV; vai entre aspas só quando tem vírgula, aspas ou quebra de linha
+    private void putCsv(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                putUtf8("\"" + value.replace("\"", "\"\"") + "\"");
+                return;
+            }
+        }
+        putUtf8(value);
+    }
+
+    private void putText(String value) {
+        if (value == null) {
+            current.putInt(-1);
+            return;
+        }
+        int start = current.position();
+        current.putInt(0);
+        encode(value);
+        current.putInt(start, current.position() - start - 4);
+    }
+
+    private static int maxText(String value) {
+        return 4 + (value != null ? value.length() * MAX_BYTES_PER_CHAR : 0);
+    }
+
+    private void putByte(char c) throws IOException {
+        ensure(1);
+        current.put((byte) c);
+    }
+
+    private void putAscii(String value) throws IOException {
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            current.put((byte) value.charAt(i));
+        }
+    }
+
+    private void putUtf8(String value) throws IOException {
+        ensure(value.length() * MAX_BYTES_PER_CHAR);
+        encode(value);
+    }
+
+    private void encode(String value) {
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(value), current, true);
+        encoder.flush(current);
+    }
+
+    //garante bytes livres no buffer atual, entregando o buffer cheio para a thread de escrita se preciso
+    private void ensure(int bytes) throws IOException {
+        if (current.remaining() >= bytes) {
+            return;
+        }
+        checkFailure();
+        try {
+            current.flip();
+            full.put(current);
+            current = free.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting");
+        }
+        current.clear();
+        //linha maior que o buffer (texto muito grande): troca por um buffer que caiba
+        if (current.capacity() < bytes) {
+            current = ByteBuffer.allocateDirect(bytes);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    //thread de escrita: grava cada buffer cheio e devolve para a fila de livres; depois de um erro só descarta
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = full.take();
+                if (buffer == END) {
+                    return;
+                }
+                if (failure == null) {
+                    try {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    }
+                    catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                buffer.clear();
+                free.offer(buffer);
+            }
+        }
+        catch (InterruptedException e) {
+            failure = new InterruptedIOException("Export writer interrupted");
+        }
+    }
+}
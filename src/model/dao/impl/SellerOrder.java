@@ -0,0 +1,64 @@
+package model.dao.impl;
+
+import model.entities.Seller;
+
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.Locale;
+
+/*
+ordem por nome usada para ordenar ou juntar em memória os sellers lidos do BD (shards, faixas de id). Quando o
+resultado junta listas que o BD já ordenou, ou continua uma paginação (Name, Id) > (?, ?) feita pelo BD, ela precisa
+ser a mesma da collation da coluna Name; por isso o ShardedSellerDao escolhe uma delas pelo shard.nameCollation:
+- ci: não diferencia maiúsculas nem acentos (Collator com força PRIMARY), como a collation padrão do MySQL;
+- cs: diferencia maiúsculas e acentos (força TERTIARY), como as collations _as_cs;
+- binary: ordem dos code points, a mesma dos bytes em UTF-8, como as collations _bin.
+ */
+final class SellerOrder {
+    static final Comparator<String> NAME_ORDER = collator(Collator.PRIMARY);
+    //ordem da paginação por chave: nome e, no empate, id
+    static final Comparator<Seller> BY_NAME_AND_ID = byNameAndId(NAME_ORDER);
+
+    private SellerOrder() {
+    }
+
+    //ordem por nome equivalente à collation informada (ci, cs ou binary)
+    static Comparator<String> forCollation(String collation) {
+        if ("ci".equalsIgnoreCase(collation)) {
+            return NAME_ORDER;
+        }
+        if ("cs".equalsIgnoreCase(collation)) {
+            return collator(Collator.TERTIARY);
+        }
+        if ("binary".equalsIgnoreCase(collation)) {
+            return Comparator.nullsFirst(SellerOrder::compareCodePoints);
+        }
+        throw new IllegalArgumentException("Unknown name collation: " + collation + " (expected ci, cs or binary).");
+    }
+
+    static Comparator<Seller> byNameAndId(Comparator<String> nameOrder) {
+        return Comparator.comparing(Seller::getName, nameOrder).thenComparing(Seller::getId);
+    }
+
+    private static Comparator<String> collator(int strength) {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(strength);
+        return Comparator.nullsFirst((a, b) -> collator.compare(a, b));
+    }
+
+    //o String.compareTo compara unidades UTF-16, que põem os caracteres fora do BMP antes de U+E000..U+FFFF
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
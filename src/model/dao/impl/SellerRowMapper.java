@@ -0,0 +1,90 @@
+package model.dao.impl;
+
+import db.DB;
+import model.dao.SellerTable;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+transforma as linhas do join seller + department em objetos. Os índices das colunas são procurados uma única vez,
+quando o mapper é criado para o ResultSet, e depois cada linha é lida pelo índice, sem buscar o nome da coluna.
+Fora de um DB.inTransaction cada Seller lido é marcado como limpo (markClean) para o update gravar só o que mudar,
+e o Department vem do DepartmentIdentityMap, compartilhado com as outras consultas. Dentro de uma transação a leitura
+pode ser desfeita, então o Seller fica sem essa marca e recebe um Department só dele.
+É público só para o DaoBenchmark comparar esta leitura com a leitura pelo nome das colunas.
+ */
+public final class SellerRowMapper {
+    private final int id;
+    private final int name;
+    private final int email;
+    private final int birthDate;
+    private final int baseSalary;
+    private final int departmentId;
+    private final int depName;
+    private final boolean track;
+
+    public SellerRowMapper(ResultSet rs) throws SQLException {
+        id = rs.findColumn("Id");
+        name = rs.findColumn("Name");
+        email = rs.findColumn("Email");
+        birthDate = rs.findColumn("BirthDate");
+        baseSalary = rs.findColumn("BaseSalary");
+        departmentId = rs.findColumn("DepartmentId");
+        depName = rs.findColumn("DepName");
+        track = DB.currentTransaction() == null;
+    }
+
+    //id do department da linha atual, usado para procurar o Department já instanciado
+    int departmentId(ResultSet rs) throws SQLException {
+        return rs.getInt(departmentId);
+    }
+
+    Department department(ResultSet rs, int departmentId) throws SQLException {
+        if (track) {
+            return DepartmentIdentityMap.SHARED.get(departmentId, rs.getString(depName));
+        }
+        Department dep = new Department();
+        dep.setId(departmentId);
+        dep.setName(rs.getString(depName));
+        return dep;
+    }
+
+    //Seller da linha atual, com o seu Department
+    public Seller map(ResultSet rs) throws SQLException {
+        return seller(rs, department(rs, departmentId(rs)));
+    }
+
+    Seller seller(ResultSet rs, Department dep) throws SQLException {
+        Seller obj = new Seller();
+        obj.setId(rs.getInt(id));
+        obj.setName(rs.getString(name));
+        obj.setEmail(rs.getString(email));
+        obj.setBaseSalary(rs.getDouble(baseSalary));
+        obj.setBirthDate(rs.getDate(birthDate));
+        obj.setDepartment(dep);
+        if (track) {
+            obj.markClean();
+        }
+        return obj;
+    }
+
+    //escreve a linha atual no arquivo do export, sem criar Seller nem Department
+    void writeTo(SellerExportWriter writer, ResultSet rs) throws SQLException, IOException {
+        java.sql.Date date = rs.getDate(birthDate);
+        writer.row(rs.getInt(id), rs.getString(name), rs.getString(email),
+                date != null ? (int) date.toLocalDate().toEpochDay() : SellerTable.NO_DATE,
+                rs.getDouble(baseSalary), rs.getInt(departmentId), rs.getString(depName));
+    }
+
+    //adiciona a linha atual na tabela colunar, sem criar Seller nem Department
+    void addTo(SellerTable.Builder table, ResultSet rs) throws SQLException {
+        java.sql.Date date = rs.getDate(birthDate);
+        table.add(rs.getInt(id), rs.getString(name), rs.getString(email),
+                date != null ? (int) date.toLocalDate().toEpochDay() : SellerTable.NO_DATE,
+                rs.getDouble(baseSalary), rs.getInt(departmentId), rs.getString(depName));
+    }
+}
@@ -0,0 +1,84 @@
+package model.dao.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+diz em qual shard ficam os sellers de cada department. Os departments listados explicitamente vão para o shard
+configurado; os outros para DepartmentId módulo a quantidade de shards.
+
+Mudar o shard de um department não move as linhas que já estão gravadas: elas precisam ser copiadas para o shard
+novo antes de o mapa mudar.
+ */
+public class ShardMap {
+    private final int shards;
+    private final Map<Integer, Integer> explicit;
+
+    public ShardMap(int shards, Map<Integer, Integer> explicit) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than zero.");
+        }
+        Map<Integer, Integer> copy = new HashMap<>();
+        if (explicit != null) {
+            for (Map.Entry<Integer, Integer> e : explicit.entrySet()) {
+                if (e.getKey() == null || e.getValue() == null || e.getValue() < 0 || e.getValue() >= shards) {
+                    throw new IllegalArgumentException("Invalid shard for department " + e.getKey() + ": "
+                            + e.getValue());
+                }
+                copy.put(e.getKey(), e.getValue());
+            }
+        }
+        this.shards = shards;
+        this.explicit = Collections.unmodifiableMap(copy);
+    }
+
+    //mapa só com a regra do módulo
+    public ShardMap(int shards) {
+        this(shards, null);
+    }
+
+    /*
+    lê o mapa no formato "departmentId:shard" separado por vírgula, como no shard.map do db.properties
+    (ex.: "1:0,2:1,3:1"). Texto vazio ou null deixa todos os departments na regra do módulo.
+     */
+    public static ShardMap parse(int shards, String text) {
+        Map<Integer, Integer> explicit = new HashMap<>();
+        if (text != null) {
+            for (String entry : text.split(",")) {
+                if (entry.trim().isEmpty()) {
+                    continue;
+                }
+                String[] parts = entry.split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid shard map entry: " + entry.trim());
+                }
+                try {
+                    explicit.put(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+                }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid shard map entry: " + entry.trim());
+                }
+            }
+        }
+        return new ShardMap(shards, explicit);
+    }
+
+    public int getShardCount() {
+        return shards;
+    }
+
+    //índice (a partir de 0) do shard dos sellers do department
+    public int shardOf(int departmentId) {
+        Integer shard = explicit.get(departmentId);
+        return shard != null ? shard : Math.floorMod(departmentId, shards);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardMap{" +
+                "shards=" + shards +
+                ", explicit=" + explicit +
+                '}';
+    }
+}
@@ -0,0 +1,841 @@
+package model.dao.impl;
+
+import db.ConnectionPool;
+import db.DB;
+import db.DbException;
+import db.DbExecutor;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+SellerDao dividido em vários bancos (shards) pelo DepartmentId: os sellers de um department ficam todos no shard
+indicado pelo ShardMap. Cada shard tem as tabelas seller e department (a department precisa estar igual em todos,
+por causa do INNER JOIN das consultas).
+
+findByDepartment, findPageByDepartment e streamByDepartment vão a um único shard. findAll, streamAll e forEach abrem
+o ORDER BY Name de todos os shards ao mesmo tempo e intercalam os cursores (k-way merge), guardando em memória só a
+linha da vez de cada shard. O merge e o corte das páginas do findPage usam a ordem por nome do SellerOrder escolhida
+no construtor, que precisa ser a mesma da collation da coluna Name nos shards: se forem diferentes, o findAll sai
+fora de ordem e a paginação pula ou repete linhas. Consultas por id não sabem o department, então perguntam a todos os shards em paralelo.
+
+Os ids não vêm do AUTO_INCREMENT de cada banco, que repetiria ids entre shards: o HiLoIdGenerator reserva blocos
+da sequência "seller" na tabela id_sequence do primeiro shard. Um update que troca o seller de shard (mudança de
+department) grava a linha no shard novo antes de apagar a do antigo, então uma falha no meio deixa a linha
+repetida em vez de perdida; repetir o update corrige.
+
+Não há transação entre shards: o DAO não pode ser usado dentro de um DB.inTransaction.
+ */
+public class ShardedSellerDao implements SellerDao, AutoCloseable {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final List<ConnectionPool> pools;
+    private final List<SellerDaoJDBC> shards;
+    private final ShardMap shardMap;
+    private final HiLoIdGenerator ids;
+    private final DbExecutor executor;
+    private final Comparator<String> nameOrder;
+    private final Comparator<Seller> byNameAndId;
+
+    /*
+    um shard por pool, na ordem dos índices do ShardMap. O DAO passa a ser dono dos pools e os fecha no close().
+    idBlockSize é quantos ids são reservados na sequência a cada ida ao primeiro shard. nameCollation é a collation
+    da coluna Name nos shards (ci, cs ou binary, ver SellerOrder).
+     */
+    public ShardedSellerDao(List<ConnectionPool> pools, ShardMap shardMap, int idBlockSize, String nameCollation) {
+        if (pools == null || pools.isEmpty()) {
+            throw new IllegalArgumentException("Shard pool list cannot be null or empty.");
+        }
+        if (shardMap == null) {
+            throw new IllegalArgumentException("Shard map cannot be null.");
+        }
+        if (shardMap.getShardCount() != pools.size()) {
+            throw new IllegalArgumentException("Shard map has " + shardMap.getShardCount() + " shards, but "
+                    + pools.size() + " pools were given.");
+        }
+        this.pools = Collections.unmodifiableList(new ArrayList<>(pools));
+        List<SellerDaoJDBC> daos = new ArrayList<>();
+        int maxConnections = 0;
+        for (ConnectionPool pool : this.pools) {
+            daos.add(new SellerDaoJDBC(pool));
+            maxConnections += pool.getMaxSize();
+        }
+        this.shards = Collections.unmodifiableList(daos);
+        this.shardMap = shardMap;
+        this.ids = new HiLoIdGenerator(this.pools.get(0), "seller", idBlockSize);
+        this.executor = new DbExecutor(maxConnections);
+        this.nameOrder = SellerOrder.forCollation(nameCollation);
+        this.byNameAndId = SellerOrder.byNameAndId(nameOrder);
+    }
+
+    //shards com a collation padrão do MySQL, que não diferencia maiúsculas nem acentos
+    public ShardedSellerDao(List<ConnectionPool> pools, ShardMap shardMap, int idBlockSize) {
+        this(pools, shardMap, idBlockSize, "ci");
+    }
+
+    /*
+    monta os shards a partir do db.properties: shard.urls (separadas por vírgula, com o mesmo usuário, senha e
+    configurações de pool do dburl; vazio = um único shard no dburl), shard.map, shard.idBlockSize e
+    shard.nameCollation.
+     */
+    public static ShardedSellerDao fromProperties(Properties props) {
+        List<ConnectionPool> pools = new ArrayList<>();
+        try {
+            for (String url : props.getProperty("shard.urls", "").split(",")) {
+                if (!url.trim().isEmpty()) {
+                    pools.add(ConnectionPool.fromProperties(props, url.trim()));
+                }
+            }
+            if (pools.isEmpty()) {
+                pools.add(ConnectionPool.fromProperties(props));
+            }
+            return new ShardedSellerDao(pools, ShardMap.parse(pools.size(), props.getProperty("shard.map")),
+                    Integer.parseInt(props.getProperty("shard.idBlockSize", "100")),
+                    props.getProperty("shard.nameCollation", "ci"));
+        }
+        catch (RuntimeException e) {
+            for (ConnectionPool pool : pools) {
+                pool.close();
+            }
+            throw e;
+        }
+    }
+
+    //liga a numeração das linhas do findModifiedSince em todos os shards (ver SellerDaoJDBC.setRowVersions)
+    public void setRowVersions(boolean rowVersions) {
+        for (SellerDaoJDBC shard : shards) {
+            shard.setRowVersions(rowVersions);
+        }
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void insert(Seller obj) {
+        checkNoTransaction();
+        SellerDaoJDBC shard = shards.get(shardOf(obj));
+        Integer previous = obj.getId();
+        obj.setId(ids.next());
+        try {
+            shard.insertWithIds(Collections.singletonList(obj), 1);
+        }
+        catch (RuntimeException e) {
+            obj.setId(previous);
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list) {
+        insertAll(list, DEFAULT_BATCH_SIZE);
+    }
+
+    /*
+    atribui os ids e grava cada shard em paralelo, em lotes de batchSize. Se um shard falhar, os outros continuam
+    gravados e os sellers dele ficam com o id reservado, mas sem linha no BD.
+     */
+    @Override
+    public void insertAll(Collection<Seller> list, int batchSize) {
+        checkNoTransaction();
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        Map<Integer, List<Seller>> groups = groupByShard(list);
+        for (Seller obj : list) {
+            obj.setId(ids.next());
+        }
+        forEachShard(groups, (shard, group) -> shard.insertWithIds(group, batchSize));
+    }
+
+    /*
+    se o department não mudou desde a leitura, o seller continua no mesmo shard e o update vai direto para ele.
+    Senão o seller é procurado em todos os shards e, se estiver em outro, é movido para o shard do department novo.
+     */
+    @Override
+    public void update(Seller obj) {
+        checkNoTransaction();
+        int target = shardOf(obj);
+        checkId(obj.getId());
+        if (!obj.getChangedFields().contains(Seller.Field.DEPARTMENT)) {
+            shards.get(target).update(obj);
+            return;
+        }
+        List<Integer> holders = holders(obj.getId());
+        if (holders.isEmpty()) {
+            throw new DbException("No rows affected. Seller ID may not exist: " + obj.getId());
+        }
+        if (holders.contains(target)) {
+            shards.get(target).update(obj);
+        }
+        else {
+            shards.get(target).insertWithIds(Collections.singletonList(obj), 1);
+        }
+        removeFromOthers(obj.getId(), holders, target);
+    }
+
+    //os sellers que continuam no mesmo shard vão em lote para cada shard, em paralelo; os que mudam de shard, um a um
+    @Override
+    public void updateAll(Collection<Seller> list) {
+        checkNoTransaction();
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        Map<Integer, List<Seller>> sameShard = new TreeMap<>();
+        List<Seller> moving = new ArrayList<>();
+        for (Seller obj : list) {
+            int shard = shardOf(obj);
+            checkId(obj.getId());
+            if (obj.getChangedFields().contains(Seller.Field.DEPARTMENT)) {
+                moving.add(obj);
+            }
+            else {
+                sameShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(obj);
+            }
+        }
+        forEachShard(sameShard, SellerDaoJDBC::updateAll);
+        for (Seller obj : moving) {
+            update(obj);
+        }
+    }
+
+    /*
+    seller sem id é inserido com um id da sequência. Com id, a linha é gravada no shard do department dele e apagada
+    de qualquer outro shard onde estivesse. Ids informados pelo chamador não podem cair na faixa da sequência.
+     */
+    @Override
+    public UpsertResult upsert(Seller obj) {
+        checkNoTransaction();
+        int target = shardOf(obj);
+        if (obj.getId() == null) {
+            insert(obj);
+            return UpsertResult.INSERTED;
+        }
+        List<Integer> holders = holders(obj.getId());
+        UpsertResult result = shards.get(target).upsert(obj);
+        removeFromOthers(obj.getId(), holders, target);
+        return holders.isEmpty() ? result : UpsertResult.UPDATED;
+    }
+
+    //os sellers sem id são inseridos em lote; os com id precisam ser localizados, então vão um a um
+    @Override
+    public void upsertAll(Collection<Seller> list) {
+        checkNoTransaction();
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        List<Seller> withId = new ArrayList<>();
+        List<Seller> withoutId = new ArrayList<>();
+        for (Seller obj : list) {
+            shardOf(obj);
+            (obj.getId() != null ? withId : withoutId).add(obj);
+        }
+        if (!withoutId.isEmpty()) {
+            insertAll(withoutId);
+        }
+        for (Seller obj : withId) {
+            upsert(obj);
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        checkNoTransaction();
+        checkId(id);
+        List<Integer> holders = holders(id);
+        if (holders.isEmpty()) {
+            throw new DbException("Error! Id not found");
+        }
+        for (int shard : holders) {
+            shards.get(shard).deleteById(id);
+        }
+    }
+
+    @Override
+    public Seller findById(Integer id) {
+        checkId(id);
+        for (Seller obj : scatter(shard -> shard.findById(id))) {
+            if (obj != null) {
+                return obj;
+            }
+        }
+        return null;
+    }
+
+    //cada shard recebe todos os ids; o resultado segue a ordem dos ids recebidos
+    @Override
+    public Map<Integer, Seller> findByIds(Collection<Integer> ids) {
+        List<Integer> distinct = IdChunks.distinct(ids);
+        Map<Integer, Seller> result = new LinkedHashMap<>();
+        if (distinct.isEmpty()) {
+            return result;
+        }
+        Map<Integer, Seller> found = new HashMap<>(distinct.size() * 2);
+        for (Map<Integer, Seller> part : scatter(shard -> shard.findByIds(distinct))) {
+            for (Map.Entry<Integer, Seller> e : part.entrySet()) {
+                found.putIfAbsent(e.getKey(), e.getValue());
+            }
+        }
+        for (Integer id : distinct) {
+            Seller obj = found.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Seller> findAll() {
+        List<Seller> list = new ArrayList<>();
+        try (Stream<Seller> stream = streamAll()) {
+            stream.forEach(list::add);
+        }
+        return list;
+    }
+
+    /*
+    cada shard faz o seu scan paralelo com parallelism conexões, todos ao mesmo tempo. As listas dos shards são
+    juntadas e ordenadas uma vez aqui, por nome (na ordem do shard.nameCollation) ou, sem orderByName, por id.
+     */
+    @Override
+    public List<Seller> findAllParallel(int parallelism, boolean orderByName) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero.");
+        }
+        List<Seller> list = new ArrayList<>();
+        for (List<Seller> part : scatter(shard -> shard.findAllParallel(parallelism, false))) {
+            list.addAll(part);
+        }
+        list.sort(orderByName ? byNameAndId : Comparator.comparing(Seller::getId));
+        return list;
+    }
+
+    //a tabela de cada shard já vem ordenada por id, então basta intercalar as linhas
+    @Override
+    public SellerTable findAllAsTable() {
+        List<SellerTable> tables = scatter(SellerDao::findAllAsTable);
+        int total = 0;
+        for (SellerTable t : tables) {
+            total += t.size();
+        }
+        SellerTable.Builder builder = new SellerTable.Builder(total);
+        int[] rows = new int[tables.size()];
+        for (int n = 0; n < total; n++) {
+            int best = -1;
+            for (int i = 0; i < tables.size(); i++) {
+                if (rows[i] < tables.get(i).size()
+                        && (best < 0 || tables.get(i).getId(rows[i]) < tables.get(best).getId(rows[best]))) {
+                    best = i;
+                }
+            }
+            SellerTable t = tables.get(best);
+            int row = rows[best]++;
+            int depId = t.getDepartmentId(row);
+            builder.add(t.getId(row), t.getName(row), t.getEmail(row), t.getBirthEpochDay(row),
+                    t.getBaseSalary(row), depId, t.getDepartmentName(depId));
+        }
+        return builder.build();
+    }
+
+    /*
+    cada shard exporta ao mesmo tempo para um arquivo temporário próprio, e os arquivos são juntados no destino com
+    FileChannel.transferTo (sem passar pelo heap), mantendo só o cabeçalho do primeiro. As linhas ficam em ordem de id
+    dentro de cada shard, um shard depois do outro.
+     */
+    @Override
+    public long exportAll(ExportFormat format, Path file) {
+        checkNoTransaction();
+        if (format == null) {
+            throw new IllegalArgumentException("Export format cannot be null.");
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null.");
+        }
+        Path target = file.toAbsolutePath();
+        List<Path> parts = new ArrayList<>();
+        Path temp = null;
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                parts.add(Files.createTempFile(target.getParent(), target.getFileName() + ".shard" + i, ".tmp"));
+            }
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            List<CompletableFuture<Long>> calls = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                SellerDaoJDBC shard = shards.get(i);
+                Path part = parts.get(i);
+                calls.add(executor.submit(() -> shard.exportAll(format, part)));
+            }
+            List<Long> counts = gather(calls, null);
+            int header = SellerExportWriter.headerLength(format);
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (int i = 0; i < parts.size(); i++) {
+                    try (FileChannel in = FileChannel.open(parts.get(i), StandardOpenOption.READ)) {
+                        long position = i == 0 ? 0 : header;
+                        long size = in.size();
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+                out.force(false);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            long rows = 0;
+            for (long count : counts) {
+                rows += count;
+            }
+            return rows;
+        }
+        catch (IOException e) {
+            throw new DbException("Error writing export file: " + e.getMessage(), e);
+        }
+        finally {
+            if (temp != null) {
+                parts.add(temp);
+            }
+            for (Path part : parts) {
+                try {
+                    Files.deleteIfExists(part);
+                }
+                catch (IOException e) {
+                    //o temporário fica para trás, mas o erro original é o que interessa
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment() {
+        return findSalaryStatsByDepartment(null, null);
+    }
+
+    /*
+    cada shard agrupa os seus sellers; um department normalmente está em um só shard, mas os grupos repetidos
+    (linhas ainda não migradas depois de mudar o ShardMap) são somados.
+     */
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        if (birthFrom != null && birthTo != null && birthFrom.after(birthTo)) {
+            throw new IllegalArgumentException("Birth date range start cannot be after its end.");
+        }
+        Map<Integer, List<SalaryStats>> byDepartment = new LinkedHashMap<>();
+        for (List<SalaryStats> part : scatter(shard -> shard.findSalaryStatsByDepartment(birthFrom, birthTo))) {
+            for (SalaryStats s : part) {
+                byDepartment.computeIfAbsent(s.getDepartmentId(), k -> new ArrayList<>()).add(s);
+            }
+        }
+        List<SalaryStats> result = new ArrayList<>(byDepartment.size());
+        for (List<SalaryStats> group : byDepartment.values()) {
+            SalaryStats total = SalaryStats.total(group);
+            result.add(new SalaryStats(group.get(0).getDepartmentId(), group.get(0).getDepartmentName(),
+                    total.getCount(), total.getSum(), total.getMin(), total.getMax()));
+        }
+        result.sort(Comparator.comparing(SalaryStats::getDepartmentName, nameOrder)
+                .thenComparing(SalaryStats::getDepartmentId));
+        return result;
+    }
+
+    @Override
+    public List<Seller> findByDepartment(Department department) {
+        return shardOf(department).findByDepartment(department);
+    }
+
+    /*
+    busca a mesma página em todos os shards e fica com os limit primeiros de (Name, Id). O cursor da próxima página
+    é a última linha entregue, e cada shard continua dali na chamada seguinte. O corte é feito na ordem do
+    shard.nameCollation e o cursor é comparado pelo BD na collation da coluna, por isso as duas precisam ser iguais.
+     */
+    @Override
+    public Page<Seller> findPage(PageCursor cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        List<Seller> merged = new ArrayList<>();
+        boolean more = false;
+        for (Page<Seller> page : scatter(shard -> shard.findPage(cursor, limit))) {
+            merged.addAll(page.getItems());
+            more |= page.hasNext();
+        }
+        merged.sort(byNameAndId);
+        if (merged.size() > limit) {
+            merged = new ArrayList<>(merged.subList(0, limit));
+            more = true;
+        }
+        Seller last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+        return new Page<>(merged, more && last != null ? new PageCursor(last.getName(), last.getId()) : null);
+    }
+
+    @Override
+    public Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        return shardOf(department).findPageByDepartment(department, cursor, limit);
+    }
+
+    /*
+    abre o streamAll de todos os shards em paralelo (as consultas rodam ao mesmo tempo) e devolve um Stream que
+    intercala as linhas por nome. Fechar o Stream fecha os cursores e devolve as conexões de todos os shards.
+     */
+    @Override
+    public Stream<Seller> streamAll() {
+        MergedCursor cursor = new MergedCursor(scatter(SellerDao::streamAll, Stream::close), nameOrder);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    @Override
+    public Stream<Seller> streamByDepartment(Department department) {
+        return shardOf(department).streamByDepartment(department);
+    }
+
+    @Override
+    public void forEach(Consumer<Seller> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        try (Stream<Seller> stream = streamAll()) {
+            stream.forEach(action);
+        }
+    }
+
+    //os shards são percorridos ao mesmo tempo, cada um com parallelism threads chamando a action
+    @Override
+    public void forEachParallel(int parallelism, Consumer<Seller> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero.");
+        }
+        scatter(shard -> {
+            shard.forEachParallel(parallelism, action);
+            return null;
+        });
+    }
+
+    /*
+    feed de alterações de todos os shards. Cada shard tem o seu contador de versões, então o token guarda uma versão
+    por shard. A página é montada pegando uma alteração de cada shard por vez até limit, e a versão de cada shard
+    avança só até a última alteração dele que entrou.
+
+    Um seller que mudou de shard aparece como apagado no shard antigo; como a ordem entre shards não é conhecida,
+    os ids apagados são procurados nos outros shards, e o que ainda existe vai para changed com os valores atuais.
+     */
+    @Override
+    public Changes<Seller> findModifiedSince(ChangeToken since, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than zero.");
+        }
+        checkNoTransaction();
+        long[] versions = new long[shards.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = RowVersions.since(since, i, versions.length);
+        }
+        List<CompletableFuture<List<RowVersions.Change<Seller>>>> calls = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            SellerDaoJDBC shard = shards.get(i);
+            long version = versions[i];
+            calls.add(executor.submit(() -> shard.changesSince(version, limit)));
+        }
+        List<List<RowVersions.Change<Seller>>> perShard = gather(calls, null);
+
+        List<RowVersions.Change<Seller>> taken = new ArrayList<>(limit);
+        int[] next = new int[perShard.size()];
+        boolean progress = true;
+        while (taken.size() < limit && progress) {
+            progress = false;
+            for (int i = 0; i < perShard.size() && taken.size() < limit; i++) {
+                if (next[i] < perShard.get(i).size()) {
+                    RowVersions.Change<Seller> change = perShard.get(i).get(next[i]++);
+                    taken.add(change);
+                    versions[i] = change.version;
+                    progress = true;
+                }
+            }
+        }
+        boolean more = false;
+        for (int i = 0; i < perShard.size(); i++) {
+            more |= next[i] < perShard.get(i).size();
+        }
+        Changes<Seller> page = RowVersions.toChanges(taken, new ChangeToken(versions), more);
+        if (page.getDeletedIds().isEmpty()) {
+            return page;
+        }
+        Map<Integer, Seller> moved = findByIds(page.getDeletedIds());
+        if (moved.isEmpty()) {
+            return page;
+        }
+        Map<Integer, Seller> changed = new LinkedHashMap<>();
+        for (Seller obj : page.getChanged()) {
+            changed.put(obj.getId(), obj);
+        }
+        changed.putAll(moved);
+        List<Integer> deleted = new ArrayList<>();
+        for (Integer id : page.getDeletedIds()) {
+            if (!moved.containsKey(id)) {
+                deleted.add(id);
+            }
+        }
+        return new Changes<>(new ArrayList<>(changed.values()), deleted, page.getNextToken(), more);
+    }
+
+    //encerra o executor e fecha os pools de todos os shards
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (ConnectionPool pool : pools) {
+            pool.close();
+        }
+    }
+
+    //índice do shard do department do seller, validando o seller
+    private int shardOf(Seller obj) {
+        SellerDaoJDBC.validateSeller(obj);
+        if (obj.getDepartment().getId() == null) {
+            throw new IllegalArgumentException("Department id cannot be null.");
+        }
+        return shardMap.shardOf(obj.getDepartment().getId());
+    }
+
+    private SellerDaoJDBC shardOf(Department department) {
+        checkNoTransaction();
+        if (department == null) {
+            throw new IllegalArgumentException("Department cannot be null.");
+        }
+        if (department.getId() == null) {
+            throw new IllegalArgumentException("Department id cannot be null.");
+        }
+        return shards.get(shardMap.shardOf(department.getId()));
+    }
+
+    private Map<Integer, List<Seller>> groupByShard(Collection<Seller> list) {
+        Map<Integer, List<Seller>> groups = new TreeMap<>();
+        for (Seller obj : list) {
+            groups.computeIfAbsent(shardOf(obj), k -> new ArrayList<>()).add(obj);
+        }
+        return groups;
+    }
+
+    //shards onde existe uma linha com o id (normalmente um só)
+    private List<Integer> holders(Integer id) {
+        List<Seller> found = scatter(shard -> shard.findById(id));
+        List<Integer> holders = new ArrayList<>();
+        for (int i = 0; i < found.size(); i++) {
+            if (found.get(i) != null) {
+                holders.add(i);
+            }
+        }
+        return holders;
+    }
+
+    private void removeFromOthers(Integer id, List<Integer> holders, int target) {
+        for (int shard : holders) {
+            if (shard != target) {
+                shards.get(shard).deleteById(id);
+            }
+        }
+    }
+
+    //executa a action de cada grupo no shard dele, todos em paralelo
+    private void forEachShard(Map<Integer, List<Seller>> groups, BiConsumer<SellerDaoJDBC, List<Seller>> action) {
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (Map.Entry<Integer, List<Seller>> e : groups.entrySet()) {
+            SellerDaoJDBC shard = shards.get(e.getKey());
+            List<Seller> group = e.getValue();
+            calls.add(executor.run(() -> action.accept(shard, group)));
+        }
+        gather(calls, null);
+    }
+
+    //executa a chamada em todos os shards em paralelo e devolve os resultados na ordem dos shards
+    private <T> List<T> scatter(Function<SellerDaoJDBC, T> call) {
+        return scatter(call, null);
+    }
+
+    private <T> List<T> scatter(Function<SellerDaoJDBC, T> call, Consumer<T> discard) {
+        checkNoTransaction();
+        List<CompletableFuture<T>> calls = new ArrayList<>(shards.size());
+        for (SellerDaoJDBC shard : shards) {
+            calls.add(executor.submit(() -> call.apply(shard)));
+        }
+        return gather(calls, discard);
+    }
+
+    /*
+    espera todas as chamadas terminarem, mesmo quando alguma falha, e relança a primeira falha com as outras como
+    suprimidas. Se houver falha, os resultados que deram certo são entregues ao discard (ex.: fechar Streams).
+     */
+    private static <T> List<T> gather(List<CompletableFuture<T>> calls, Consumer<T> discard) {
+        List<T> results = new ArrayList<>(calls.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<T> call : calls) {
+            try {
+                results.add(call.join());
+            }
+            catch (CompletionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause() : new DbException(String.valueOf(e.getCause()));
+                if (failure == null) {
+                    failure = cause;
+                }
+                else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
+                results.add(null);
+            }
+        }
+        if (failure != null) {
+            if (discard != null) {
+                for (T result : results) {
+                    if (result != null) {
+                        discard.accept(result);
+                    }
+                }
+            }
+            throw failure;
+        }
+        return results;
+    }
+
+    private static void checkId(Integer id) {
+        if (id == null || id <= 0) {
+            throw new DbException("Invalid Id: " + id);
+        }
+    }
+
+    //os SellerDaoJDBC usariam a conexão da transação do DB, que é de um banco só
+    private static void checkNoTransaction() {
+        if (DB.currentTransaction() != null) {
+            throw new DbException("Sharded seller dao cannot be used inside DB.inTransaction");
+        }
+    }
+
+    /*
+    k-way merge dos Streams dos shards: uma fila de prioridade com a linha atual de cada shard, ordenada por nome na
+    ordem da collation dos shards (no empate, pelo índice do shard). Cada tryAdvance entrega a menor e lê a próxima linha do mesmo shard.
+     */
+    private static final class MergedCursor extends Spliterators.AbstractSpliterator<Seller> {
+        private final List<Stream<Seller>> streams;
+        private final PriorityQueue<Head> heads;
+        private boolean started = false;
+
+        MergedCursor(List<Stream<Seller>> streams, Comparator<String> nameOrder) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.streams = streams;
+            this.heads = new PriorityQueue<>(Math.max(1, streams.size()), (a, b) -> {
+                int c = nameOrder.compare(a.current.getName(), b.current.getName());
+                return c != 0 ? c : Integer.compare(a.shard, b.shard);
+            });
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Seller> action) {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < streams.size(); i++) {
+                    Head head = new Head(i, streams.get(i).spliterator());
+                    if (head.advance()) {
+                        heads.add(head);
+                    }
+                }
+            }
+            Head head = heads.poll();
+            if (head == null) {
+                return false;
+            }
+            Seller obj = head.current;
+            if (head.advance()) {
+                heads.add(head);
+            }
+            action.accept(obj);
+            return true;
+        }
+
+        //fecha todos os Streams, mesmo que algum falhe ao fechar
+        void close() {
+            RuntimeException failure = null;
+            for (Stream<Seller> stream : streams) {
+                try {
+                    stream.close();
+                }
+                catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    //linha atual de um shard no merge
+    private static final class Head {
+        final int shard;
+        final Spliterator<Seller> source;
+        Seller current;
+
+        Head(int shard, Spliterator<Seller> source) {
+            this.shard = shard;
+            this.source = source;
+        }
+
+        boolean advance() {
+            return source.tryAdvance(obj -> current = obj);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package model.dao.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+diferenças de SQL entre o MySQL da aplicação e o H2 usado como banco embarcado nos testes e no benchmark.
+O banco é identificado pelos metadados da conexão.
+ */
+enum SqlDialect {
+    /*
+    INSERT ... ON DUPLICATE KEY UPDATE. O MySQL conta 1 linha para um insert, 2 para uma linha existente alterada
+    e (com o CLIENT_FOUND_ROWS que o driver liga por padrão) 1 para uma linha existente que ficou igual; nesse último
+    caso não há chave em getGeneratedKeys(), enquanto no insert volta o id informado.
+     */
+    MYSQL {
+        @Override
+        String upsert(String table, String key, String... columns) {
+            StringBuilder sql = new StringBuilder("INSERT INTO " + table + " (" + columnList(key, columns)
+                    + ") VALUES (" + placeholders(columns.length + 1) + ")");
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(columns[i]).append(" = VALUES(").append(columns[i]).append(")");
+            }
+            return sql.toString();
+        }
+    },
+    //MERGE ... KEY: o H2 não informa se a linha existia, então o DAO consulta antes dentro da mesma transação
+    H2 {
+        @Override
+        String upsert(String table, String key, String... columns) {
+            return "MERGE INTO " + table + " (" + columnList(key, columns) + ") KEY (" + key + ") VALUES ("
+                    + placeholders(columns.length + 1) + ")";
+        }
+    };
+
+    //comando que insere a linha com a chave informada ou atualiza as colunas da linha que já tem essa chave
+    abstract String upsert(String table, String key, String... columns);
+
+    static SqlDialect of(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        return product != null && product.toUpperCase().contains("H2") ? H2 : MYSQL;
+    }
+
+    private static String columnList(String key, String... columns) {
+        StringBuilder names = new StringBuilder(key);
+        for (String column : columns) {
+            names.append(", ").append(column);
+        }
+        return names.toString();
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder values = new StringBuilder("?");
+        for (int i = 1; i < n; i++) {
+            values.append(", ?");
+        }
+        return values.toString();
+    }
+}
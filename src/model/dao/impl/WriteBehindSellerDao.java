@@ -0,0 +1,784 @@
+package model.dao.impl;
+
+import db.DB;
+import db.DbException;
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+SellerDao que não grava na hora: insert, update e deleteById entram em uma fila em memória e são gravados depois,
+todos juntos em uma única transação (DB.inTransaction), quando a fila chega a maxPending operações ou a cada
+flushIntervalMillis. Vários updates do mesmo id viram um só (vale o último) e um delete descarta o update pendente.
+
+findById e findByIds enxergam o que ainda está na fila; os outros métodos de leitura fazem flush() antes de
+consultar. O id de um Seller inserido só é atribuído quando o insert é gravado (use flush() se precisar dele).
+Se a transação do flush falhar, cada operação é gravada separadamente. As que o BD recusar (constraint, linha que não
+existe mais, dados inválidos) são descartadas e contadas em getFailedWrites(). As que falharem por erro de conexão,
+timeout do pool ou outro erro que pode passar voltam para a fila (getRequeuedWrites()) e são gravadas no próximo flush.
+Nos dois casos o flush() lança DbException, e o close() informa o que não conseguiu gravar.
+
+A transação é aberta no pool do DB, então o DAO de dentro precisa usar esse mesmo pool (como os da DaoFactory).
+ */
+public class WriteBehindSellerDao implements SellerDao, AutoCloseable {
+    private final SellerDao dao;
+    private final int maxPending;
+
+    //fila de escritas, protegida por lock
+    private final Object lock = new Object();
+    private List<PendingInsert> inserts = new ArrayList<>();
+    private IdentityHashMap<Seller, PendingInsert> insertsByObject = new IdentityHashMap<>();
+    //update (seller != null) ou delete (seller == null) pendente de cada id, na ordem em que chegaram
+    private LinkedHashMap<Integer, Seller> changes = new LinkedHashMap<>();
+    //operações retiradas da fila pelo flush em andamento, ainda visíveis para o findById
+    private Batch flushing = null;
+
+    //um flush por vez; quem chama flush() espera o que estiver em andamento terminar
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed = false;
+    private Thread shutdownHook = null;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder requeuedWrites = new LongAdder();
+
+    public WriteBehindSellerDao(SellerDao dao, int maxPending, long flushIntervalMillis) {
+        if (dao == null) {
+            throw new IllegalArgumentException("Seller dao cannot be null.");
+        }
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("Max pending writes must be greater than zero.");
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be greater than zero.");
+        }
+        this.dao = dao;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "seller-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    //grava o que estiver na fila quando a JVM for encerrada normalmente
+    public synchronized void registerShutdownHook() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(this::close, "seller-write-behind-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    @Override
+    public void insert(Seller obj) {
+        SellerDaoJDBC.validateSeller(obj);
+        int size;
+        synchronized (lock) {
+            checkOpen();
+            PendingInsert pending = insertsByObject.get(obj);
+            if (pending != null) {
+                //o mesmo objeto inserido duas vezes antes do flush continua sendo um insert só
+                pending.data = copy(obj);
+                coalesced.increment();
+            }
+            else {
+                pending = new PendingInsert(obj, copy(obj));
+                inserts.add(pending);
+                insertsByObject.put(obj, pending);
+            }
+            queued.increment();
+            size = pendingCount();
+        }
+        afterEnqueue(size);
+    }
+
+    //inserções em lote já são agrupadas pelo DAO de dentro: grava a fila e repassa direto
+    @Override
+    public void insertAll(Collection<Seller> list) {
+        flush();
+        dao.insertAll(list);
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list, int batchSize) {
+        flush();
+        dao.insertAll(list, batchSize);
+    }
+
+    @Override
+    public void update(Seller obj) {
+        SellerDaoJDBC.validateSeller(obj);
+        if (obj.getId() == null && isFlushingInsert(obj)) {
+            //o insert deste objeto está sendo gravado agora: espera o id dele
+            flush();
+        }
+        int size;
+        synchronized (lock) {
+            checkOpen();
+            enqueueUpdate(obj);
+            size = pendingCount();
+        }
+        afterEnqueue(size);
+    }
+
+    @Override
+    public void updateAll(Collection<Seller> list) {
+        if (list == null) {
+            throw new IllegalArgumentException("Seller list cannot be null.");
+        }
+        boolean waitInserts = false;
+        for (Seller obj : list) {
+            SellerDaoJDBC.validateSeller(obj);
+            waitInserts |= obj.getId() == null && isFlushingInsert(obj);
+        }
+        if (waitInserts) {
+            flush();
+        }
+        int size;
+        synchronized (lock) {
+            checkOpen();
+            for (Seller obj : list) {
+                enqueueUpdate(obj);
+            }
+            size = pendingCount();
+        }
+        afterEnqueue(size);
+    }
+
+    //o upsert precisa responder se inseriu ou atualizou, então grava a fila e vai direto ao BD
+    @Override
+    public UpsertResult upsert(Seller obj) {
+        flush();
+        return dao.upsert(obj);
+    }
+
+    @Override
+    public void upsertAll(Collection<Seller> list) {
+        flush();
+        dao.upsertAll(list);
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        if (id == null || id <= 0) {
+            throw new DbException("Invalid Id: " + id);
+        }
+        int size;
+        synchronized (lock) {
+            checkOpen();
+            if (changes.containsKey(id)) {
+                coalesced.increment();
+            }
+            //remove antes de colocar para o delete ir para o fim da ordem
+            changes.remove(id);
+            changes.put(id, null);
+            queued.increment();
+            size = pendingCount();
+        }
+        afterEnqueue(size);
+    }
+
+    @Override
+    public Seller findById(Integer id) {
+        synchronized (lock) {
+            Map<Integer, Seller> pending = pendingChange(id);
+            if (pending != null) {
+                Seller obj = pending.get(id);
+                return obj != null ? copy(obj) : null;
+            }
+        }
+        return dao.findById(id);
+    }
+
+    //ids com escrita pendente são respondidos pela fila; os outros vão ao DAO de dentro
+    @Override
+    public Map<Integer, Seller> findByIds(Collection<Integer> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Id list cannot be null.");
+        }
+        Map<Integer, Seller> pending = new HashMap<>();
+        List<Integer> rest = new ArrayList<>();
+        synchronized (lock) {
+            for (Integer id : ids) {
+                Map<Integer, Seller> source = pendingChange(id);
+                if (source != null) {
+                    Seller obj = source.get(id);
+                    pending.put(id, obj != null ? copy(obj) : null);
+                }
+                else {
+                    rest.add(id);
+                }
+            }
+        }
+        Map<Integer, Seller> loaded = rest.isEmpty() ? Collections.<Integer, Seller>emptyMap() : dao.findByIds(rest);
+        Map<Integer, Seller> result = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            Seller obj = pending.containsKey(id) ? pending.get(id) : loaded.get(id);
+            if (obj != null) {
+                result.put(id, obj);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Seller> findAll() {
+        flush();
+        return dao.findAll();
+    }
+
+    @Override
+    public List<Seller> findAllParallel(int parallelism, boolean orderByName) {
+        flush();
+        return dao.findAllParallel(parallelism, orderByName);
+    }
+
+    @Override
+    public SellerTable findAllAsTable() {
+        flush();
+        return dao.findAllAsTable();
+    }
+
+    @Override
+    public long exportAll(ExportFormat format, Path file) {
+        flush();
+        return dao.exportAll(format, file);
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment() {
+        flush();
+        return dao.findSalaryStatsByDepartment();
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        flush();
+        return dao.findSalaryStatsByDepartment(birthFrom, birthTo);
+    }
+
+    @Override
+    public List<Seller> findByDepartment(Department department) {
+        flush();
+        return dao.findByDepartment(department);
+    }
+
+    @Override
+    public Page<Seller> findPage(PageCursor cursor, int limit) {
+        flush();
+        return dao.findPage(cursor, limit);
+    }
+
+    @Override
+    public Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        flush();
+        return dao.findPageByDepartment(department, cursor, limit);
+    }
+
+    @Override
+    public Stream<Seller> streamAll() {
+        flush();
+        return dao.streamAll();
+    }
+
+    @Override
+    public Stream<Seller> streamByDepartment(Department department) {
+        flush();
+        return dao.streamByDepartment(department);
+    }
+
+    @Override
+    public void forEach(Consumer<Seller> action) {
+        flush();
+        dao.forEach(action);
+    }
+
+    @Override
+    public void forEachParallel(int parallelism, Consumer<Seller> action) {
+        flush();
+        dao.forEachParallel(parallelism, action);
+    }
+
+    @Override
+    public Changes<Seller> findModifiedSince(ChangeToken since, int limit) {
+        flush();
+        return dao.findModifiedSince(since, limit);
+    }
+
+    /*
+    grava tudo que está na fila e só retorna depois que as escritas feitas antes da chamada estiverem no BD.
+    Lança DbException se alguma delas não pôde ser gravada.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Batch batch;
+            synchronized (lock) {
+                if (pendingCount() == 0) {
+                    return;
+                }
+                batch = new Batch(inserts, changes);
+                inserts = new ArrayList<>();
+                insertsByObject = new IdentityHashMap<>();
+                changes = new LinkedHashMap<>();
+                flushing = batch;
+            }
+            try {
+                write(batch);
+            }
+            finally {
+                synchronized (lock) {
+                    requeue(batch);
+                    flushing = null;
+                }
+            }
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    /*
+    para a gravação periódica e grava o que restou na fila; depois disso as escritas são recusadas. Se alguma escrita
+    não puder ser gravada, ela é listada no System.err e na DbException lançada.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException error = null;
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            error = e;
+        }
+        finally {
+            removeShutdownHook();
+        }
+        String unwritten;
+        synchronized (lock) {
+            unwritten = pendingCount() > 0 ? describePending() : null;
+        }
+        if (unwritten != null) {
+            String msg = "Write-behind seller dao closed with unwritten operations: " + unwritten;
+            System.err.println(msg);
+            throw new DbException(msg, error);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    //quantas escritas ainda estão na fila
+    public int getPendingWrites() {
+        synchronized (lock) {
+            return pendingCount();
+        }
+    }
+
+    //quantas escritas foram recebidas
+    public long getQueuedWrites() {
+        return queued.sum();
+    }
+
+    //quantas escritas foram absorvidas por outra do mesmo Seller antes de ir ao BD
+    public long getCoalescedWrites() {
+        return coalesced.sum();
+    }
+
+    //quantas transações de flush foram feitas
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    //quantas escritas foram recusadas pelo BD e descartadas
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    //quantas escritas voltaram para a fila depois de uma falha de conexão ou outro erro temporário
+    public long getRequeuedWrites() {
+        return requeuedWrites.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindSellerDao{" +
+                "pending=" + getPendingWrites() +
+                ", queued=" + getQueuedWrites() +
+                ", coalesced=" + getCoalescedWrites() +
+                ", flushes=" + getFlushes() +
+                ", failed=" + getFailedWrites() +
+                ", requeued=" + getRequeuedWrites() +
+                '}';
+    }
+
+    //chamado com o lock: update de um insert pendente altera o próprio insert, senão substitui o update do id
+    private void enqueueUpdate(Seller obj) {
+        queued.increment();
+        PendingInsert pending = obj.getId() == null ? insertsByObject.get(obj) : null;
+        if (pending != null) {
+            pending.data = copy(obj);
+            coalesced.increment();
+            return;
+        }
+        if (obj.getId() == null) {
+            throw new IllegalArgumentException("Seller id cannot be null.");
+        }
+        if (changes.containsKey(obj.getId())) {
+            if (changes.get(obj.getId()) == null) {
+                throw new DbException("No rows affected. Seller ID was deleted: " + obj.getId());
+            }
+            coalesced.increment();
+        }
+        changes.put(obj.getId(), copy(obj));
+    }
+
+    //map de onde vem a escrita pendente do id (fila ou flush em andamento), ou null se não houver; chamado com o lock
+    private Map<Integer, Seller> pendingChange(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        if (changes.containsKey(id)) {
+            return changes;
+        }
+        if (flushing != null && flushing.changes.containsKey(id)) {
+            return flushing.changes;
+        }
+        return null;
+    }
+
+    private boolean isFlushingInsert(Seller obj) {
+        synchronized (lock) {
+            return flushing != null && flushing.insertsByObject.containsKey(obj);
+        }
+    }
+
+    //chamado com o lock
+    private int pendingCount() {
+        return inserts.size() + changes.size();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-behind seller dao is closed.");
+        }
+    }
+
+    /*
+    ao atingir maxPending pede um flush para a thread de gravação; se a fila chegar ao dobro (o BD não está dando
+    conta) quem escreveu grava ele mesmo, o que segura novas escritas até a fila baixar.
+     */
+    private void afterEnqueue(int size) {
+        if (size >= 2 * maxPending) {
+            flush();
+        }
+        else if (size >= maxPending && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            }
+            catch (RuntimeException e) {
+                //executor encerrado pelo close, que grava a fila em seguida
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    //flush da thread de gravação: os erros já foram contados, aqui só são informados
+    private void flushQuietly() {
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            System.err.println("Write-behind flush failed: " + e.getMessage());
+        }
+    }
+
+    /*
+    grava o lote em uma transação; se ela falhar, tenta cada operação separadamente. O que não foi gravado por um
+    erro temporário fica em batch.retry*, e o flush devolve para a fila.
+     */
+    private void write(Batch batch) {
+        List<Seller> insertData = new ArrayList<>(batch.inserts.size());
+        for (PendingInsert pending : batch.inserts) {
+            insertData.add(pending.data);
+        }
+        List<Seller> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (Map.Entry<Integer, Seller> e : batch.changes.entrySet()) {
+            if (e.getValue() != null) {
+                updates.add(e.getValue());
+            }
+            else {
+                deletes.add(e.getKey());
+            }
+        }
+        flushes.increment();
+        try {
+            DB.inTransaction(() -> {
+                if (!insertData.isEmpty()) {
+                    dao.insertAll(insertData);
+                }
+                if (!updates.isEmpty()) {
+                    dao.updateAll(updates);
+                }
+                for (Integer id : deletes) {
+                    dao.deleteById(id);
+                }
+            });
+            for (PendingInsert pending : batch.inserts) {
+                pending.original.setId(pending.data.getId());
+            }
+            return;
+        }
+        catch (RuntimeException e) {
+            //os ids atribuídos pelo insertAll foram desfeitos junto com a transação
+            for (Seller obj : insertData) {
+                obj.setId(null);
+            }
+            if (!isRejected(e)) {
+                //o BD não respondeu: nada foi gravado e o lote inteiro volta para a fila
+                batch.retryInserts.addAll(batch.inserts);
+                batch.retryChanges.putAll(batch.changes);
+                requeuedWrites.add(batch.inserts.size() + batch.changes.size());
+                throw new DbException("Write-behind flush failed, " + (batch.inserts.size() + batch.changes.size())
+                        + " operation(s) requeued! Caused by: " + e.getMessage(), e);
+            }
+        }
+        int failed = 0;
+        int retry = 0;
+        //depois do primeiro erro temporário as outras operações voltam para a fila sem ir ao BD
+        boolean unavailable = false;
+        RuntimeException last = null;
+        for (PendingInsert pending : batch.inserts) {
+            if (unavailable) {
+                batch.retryInserts.add(pending);
+                retry++;
+                continue;
+            }
+            try {
+                dao.insert(pending.data);
+                pending.original.setId(pending.data.getId());
+            }
+            catch (RuntimeException e) {
+                pending.data.setId(null);
+                last = e;
+                if (isRejected(e)) {
+                    failed++;
+                }
+                else {
+                    unavailable = true;
+                    batch.retryInserts.add(pending);
+                    retry++;
+                }
+            }
+        }
+        for (Map.Entry<Integer, Seller> change : batch.changes.entrySet()) {
+            if (unavailable) {
+                batch.retryChanges.put(change.getKey(), change.getValue());
+                retry++;
+                continue;
+            }
+            try {
+                if (change.getValue() != null) {
+                    dao.update(change.getValue());
+                }
+                else {
+                    dao.deleteById(change.getKey());
+                }
+            }
+            catch (RuntimeException e) {
+                last = e;
+                if (isRejected(e)) {
+                    failed++;
+                }
+                else {
+                    unavailable = true;
+                    batch.retryChanges.put(change.getKey(), change.getValue());
+                    retry++;
+                }
+            }
+        }
+        failedWrites.add(failed);
+        requeuedWrites.add(retry);
+        if (failed > 0 || retry > 0) {
+            throw new DbException(failed + " write-behind operation(s) were rejected and discarded, " + retry
+                    + " requeued! Last error: " + last.getMessage(), last);
+        }
+    }
+
+    /*
+    true quando o BD recusou a operação e tentar de novo não adianta: violação de constraint ou dado inválido
+    (SQLState 23 e 22), ou erro do próprio DAO sem SQLException (validação, nenhuma linha afetada). Qualquer outra
+    SQLException (conexão, timeout do pool, deadlock...) é tratada como temporária.
+     */
+    private static boolean isRejected(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                return t instanceof SQLIntegrityConstraintViolationException || t instanceof SQLDataException
+                        || (state != null && (state.startsWith("23") || state.startsWith("22")));
+            }
+        }
+        return true;
+    }
+
+    /*
+    devolve para a fila, na frente das escritas que chegaram durante o flush, as operações que ficaram para
+    tentar de novo; chamado com o lock. Uma escrita mais nova do mesmo Seller vale sobre a que voltou, menos um
+    update depois de um delete que voltou (o update não acharia a linha).
+     */
+    private void requeue(Batch batch) {
+        if (batch.retryInserts.isEmpty() && batch.retryChanges.isEmpty()) {
+            return;
+        }
+        List<PendingInsert> mergedInserts = new ArrayList<>(batch.retryInserts);
+        IdentityHashMap<Seller, PendingInsert> mergedByObject = new IdentityHashMap<>();
+        for (PendingInsert pending : batch.retryInserts) {
+            mergedByObject.put(pending.original, pending);
+        }
+        for (PendingInsert pending : inserts) {
+            PendingInsert retry = mergedByObject.get(pending.original);
+            if (retry != null) {
+                retry.data = pending.data;
+            }
+            else {
+                mergedInserts.add(pending);
+                mergedByObject.put(pending.original, pending);
+            }
+        }
+        LinkedHashMap<Integer, Seller> mergedChanges = new LinkedHashMap<>(batch.retryChanges);
+        for (Map.Entry<Integer, Seller> change : changes.entrySet()) {
+            Integer id = change.getKey();
+            if (mergedChanges.containsKey(id) && mergedChanges.get(id) == null && change.getValue() != null) {
+                continue;
+            }
+            mergedChanges.remove(id);
+            mergedChanges.put(id, change.getValue());
+        }
+        inserts = mergedInserts;
+        insertsByObject = mergedByObject;
+        changes = mergedChanges;
+    }
+
+    //resumo da fila para o close; chamado com o lock
+    private String describePending() {
+        List<Integer> updated = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        for (Map.Entry<Integer, Seller> change : changes.entrySet()) {
+            (change.getValue() != null ? updated : deleted).add(change.getKey());
+        }
+        List<String> inserted = new ArrayList<>(inserts.size());
+        for (PendingInsert pending : inserts) {
+            inserted.add(pending.data.getName());
+        }
+        return "inserts=" + inserted + ", updates=" + updated + ", deletes=" + deleted;
+    }
+
+    private void removeShutdownHook() {
+        Thread hook;
+        synchronized (this) {
+            hook = shutdownHook;
+            shutdownHook = null;
+        }
+        if (hook != null && hook != Thread.currentThread()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            }
+            catch (IllegalStateException e) {
+                //a JVM já está sendo encerrada
+            }
+        }
+    }
+
+    private static Seller copy(Seller obj) {
+        Department dep = obj.getDepartment();
+        return new Seller(obj.getId(), obj.getName(), obj.getEmail(),
+                obj.getBirthDate() != null ? (Date) obj.getBirthDate().clone() : null,
+                obj.getBaseSalary(),
+                dep != null ? new Department(dep.getId(), dep.getName()) : null);
+    }
+
+    //insert pendente: o objeto de quem chamou (que recebe o id) e a cópia dos dados que serão gravados
+    private static final class PendingInsert {
+        final Seller original;
+        Seller data;
+
+        PendingInsert(Seller original, Seller data) {
+            this.original = original;
+            this.data = data;
+        }
+    }
+
+    //escritas retiradas da fila por um flush
+    private static final class Batch {
+        final List<PendingInsert> inserts;
+        final IdentityHashMap<Seller, PendingInsert> insertsByObject = new IdentityHashMap<>();
+        final LinkedHashMap<Integer, Seller> changes;
+        //o que não foi gravado por erro temporário e volta para a fila
+        final List<PendingInsert> retryInserts = new ArrayList<>();
+        final LinkedHashMap<Integer, Seller> retryChanges = new LinkedHashMap<>();
+
+        Batch(List<PendingInsert> inserts, LinkedHashMap<Integer, Seller> changes) {
+            this.inserts = inserts;
+            this.changes = changes;
+            for (PendingInsert pending : inserts) {
+                insertsByObject.put(pending.original, pending);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package model.dao.metrics;
+
+import java.util.Map;
+
+//reporter que imprime as métricas no console, uma linha por método que já foi chamado
+public class ConsoleMetricsReporter implements MetricsReporter {
+    @Override
+    public void report(Map<String, MethodStats> methods) {
+        for (MethodStats stats : methods.values()) {
+            if (stats.getCalls() > 0) {
+                System.out.println(stats);
+            }
+        }
+    }
+}
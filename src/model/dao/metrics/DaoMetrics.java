@@ -0,0 +1,116 @@
+package model.dao.metrics;
+
+import db.ConnectionPool;
+import db.DbException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/*
+registro das métricas de todos os métodos dos DAOs. Os decorators MeteredSellerDao e MeteredDepartmentDao chamam
+o record() em volta de cada chamada; as métricas podem ser lidas por JMX (registerMBean) ou publicadas
+periodicamente para um MetricsReporter.
+ */
+public class DaoMetrics implements DaoMetricsMXBean {
+    public static final String OBJECT_NAME = "model.dao:type=DaoMetrics";
+
+    private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporterExecutor;
+
+    //métricas de um método, criadas na primeira chamada
+    public MethodMetrics method(String name) {
+        MethodMetrics m = methods.get(name);
+        if (m == null) {
+            m = methods.computeIfAbsent(name, MethodMetrics::new);
+        }
+        return m;
+    }
+
+    /*
+    executa a chamada medindo a latência, o tempo esperando conexão do pool e as linhas retornadas/afetadas
+    (calculadas pelo rows a partir do resultado).
+     */
+    public <T> T record(String name, Supplier<T> call, ToLongFunction<T> rows) {
+        MethodMetrics m = method(name);
+        long waitBefore = ConnectionPool.currentThreadWaitNanos();
+        long begin = System.nanoTime();
+        try {
+            T result = call.get();
+            m.recordSuccess(System.nanoTime() - begin, ConnectionPool.currentThreadWaitNanos() - waitBefore,
+                    rows.applyAsLong(result));
+            return result;
+        }
+        catch (RuntimeException e) {
+            m.recordFailure(System.nanoTime() - begin, ConnectionPool.currentThreadWaitNanos() - waitBefore,
+                    e instanceof DbException);
+            throw e;
+        }
+    }
+
+    //mesmo que o record acima, para métodos sem retorno
+    public void record(String name, Runnable call, long rows) {
+        record(name, () -> {
+            call.run();
+            return null;
+        }, result -> rows);
+    }
+
+    @Override
+    public Map<String, MethodStats> getMethods() {
+        Map<String, MethodStats> snapshot = new TreeMap<>();
+        for (MethodMetrics m : methods.values()) {
+            snapshot.put(m.getName(), m.snapshot());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        for (MethodMetrics m : methods.values()) {
+            m.reset();
+        }
+    }
+
+    //registra as métricas no MBeanServer da JVM com o nome OBJECT_NAME
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Error registering DAO metrics MBean: " + e.getMessage(), e);
+        }
+    }
+
+    //publica as métricas no reporter a cada periodSeconds segundos, substituindo o reporter anterior
+    public synchronized void startReporting(MetricsReporter reporter, long periodSeconds) {
+        stopReporting();
+        reporterExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dao-metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporterExecutor.scheduleAtFixedRate(() -> reporter.report(getMethods()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporterExecutor != null) {
+            reporterExecutor.shutdownNow();
+            reporterExecutor = null;
+        }
+    }
+}
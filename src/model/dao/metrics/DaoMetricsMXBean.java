@@ -0,0 +1,12 @@
+package model.dao.metrics;
+
+import java.util.Map;
+
+//interface exposta via JMX (jconsole, VisualVM, etc.) com as métricas de cada método dos DAOs
+public interface DaoMetricsMXBean {
+    //métricas por método, com nomes como "SellerDao.findById"
+    Map<String, MethodStats> getMethods();
+
+    //zera todas as métricas
+    void reset();
+}
@@ -0,0 +1,90 @@
+package model.dao.metrics;
+
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.DepartmentDao;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.UpsertResult;
+import model.entities.Department;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+//DepartmentDao que grava no DaoMetrics a latência, as linhas e os erros de cada chamada ao DAO de dentro
+public class MeteredDepartmentDao implements DepartmentDao {
+    private static final String PREFIX = "DepartmentDao.";
+
+    private final DepartmentDao dao;
+    private final DaoMetrics metrics;
+
+    public MeteredDepartmentDao(DepartmentDao dao, DaoMetrics metrics) {
+        if (dao == null || metrics == null) {
+            throw new IllegalArgumentException("Department dao and metrics cannot be null.");
+        }
+        this.dao = dao;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void insert(Department obj) {
+        metrics.record(PREFIX + "insert", () -> dao.insert(obj), 1);
+    }
+
+    @Override
+    public void insertAll(Collection<Department> list) {
+        metrics.record(PREFIX + "insertAll", () -> dao.insertAll(list), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void insertAll(Collection<Department> list, int batchSize) {
+        metrics.record(PREFIX + "insertAll", () -> dao.insertAll(list, batchSize), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void update(Department obj) {
+        metrics.record(PREFIX + "update", () -> dao.update(obj), 1);
+    }
+
+    @Override
+    public UpsertResult upsert(Department obj) {
+        return metrics.record(PREFIX + "upsert", () -> dao.upsert(obj), result -> 1);
+    }
+
+    @Override
+    public void upsertAll(Collection<Department> list) {
+        metrics.record(PREFIX + "upsertAll", () -> dao.upsertAll(list), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        metrics.record(PREFIX + "deleteById", () -> dao.deleteById(id), 1);
+    }
+
+    @Override
+    public Department findById(Integer id) {
+        return metrics.record(PREFIX + "findById", () -> dao.findById(id), obj -> obj != null ? 1 : 0);
+    }
+
+    @Override
+    public Map<Integer, Department> findByIds(Collection<Integer> ids) {
+        return metrics.record(PREFIX + "findByIds", () -> dao.findByIds(ids), Map::size);
+    }
+
+    @Override
+    public List<Department> findAll() {
+        return metrics.record(PREFIX + "findAll", dao::findAll, List::size);
+    }
+
+    @Override
+    public Page<Department> findPage(PageCursor cursor, int limit) {
+        return metrics.record(PREFIX + "findPage", () -> dao.findPage(cursor, limit), p -> p.getItems().size());
+    }
+
+    @Override
+    public Changes<Department> findModifiedSince(ChangeToken since, int limit) {
+        return metrics.record(PREFIX + "findModifiedSince", () -> dao.findModifiedSince(since, limit),
+                c -> c.getChanged().size() + c.getDeletedIds().size());
+    }
+}
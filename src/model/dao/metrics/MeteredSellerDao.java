@@ -0,0 +1,180 @@
+package model.dao.metrics;
+
+import model.dao.ChangeToken;
+import model.dao.Changes;
+import model.dao.ExportFormat;
+import model.dao.Page;
+import model.dao.PageCursor;
+import model.dao.SalaryStats;
+import model.dao.SellerDao;
+import model.dao.SellerTable;
+import model.dao.UpsertResult;
+import model.entities.Department;
+import model.entities.Seller;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//SellerDao que grava no DaoMetrics a latência, as linhas e os erros de cada chamada ao DAO de dentro
+public class MeteredSellerDao implements SellerDao {
+    private static final String PREFIX = "SellerDao.";
+
+    private final SellerDao dao;
+    private final DaoMetrics metrics;
+
+    public MeteredSellerDao(SellerDao dao, DaoMetrics metrics) {
+        if (dao == null || metrics == null) {
+            throw new IllegalArgumentException("Seller dao and metrics cannot be null.");
+        }
+        this.dao = dao;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void insert(Seller obj) {
+        metrics.record(PREFIX + "insert", () -> dao.insert(obj), 1);
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list) {
+        metrics.record(PREFIX + "insertAll", () -> dao.insertAll(list), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void insertAll(Collection<Seller> list, int batchSize) {
+        metrics.record(PREFIX + "insertAll", () -> dao.insertAll(list, batchSize), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void update(Seller obj) {
+        metrics.record(PREFIX + "update", () -> dao.update(obj), 1);
+    }
+
+    @Override
+    public UpsertResult upsert(Seller obj) {
+        return metrics.record(PREFIX + "upsert", () -> dao.upsert(obj), result -> 1);
+    }
+
+    @Override
+    public void upsertAll(Collection<Seller> list) {
+        metrics.record(PREFIX + "upsertAll", () -> dao.upsertAll(list), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void updateAll(Collection<Seller> list) {
+        metrics.record(PREFIX + "updateAll", () -> dao.updateAll(list), list != null ? list.size() : 0);
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        metrics.record(PREFIX + "deleteById", () -> dao.deleteById(id), 1);
+    }
+
+    @Override
+    public Seller findById(Integer id) {
+        return metrics.record(PREFIX + "findById", () -> dao.findById(id), obj -> obj != null ? 1 : 0);
+    }
+
+    @Override
+    public Map<Integer, Seller> findByIds(Collection<Integer> ids) {
+        return metrics.record(PREFIX + "findByIds", () -> dao.findByIds(ids), Map::size);
+    }
+
+    @Override
+    public List<Seller> findAll() {
+        return metrics.record(PREFIX + "findAll", dao::findAll, List::size);
+    }
+
+    @Override
+    public List<Seller> findAllParallel(int parallelism, boolean orderByName) {
+        return metrics.record(PREFIX + "findAllParallel", () -> dao.findAllParallel(parallelism, orderByName),
+                List::size);
+    }
+
+    @Override
+    public SellerTable findAllAsTable() {
+        return metrics.record(PREFIX + "findAllAsTable", dao::findAllAsTable, SellerTable::size);
+    }
+
+    @Override
+    public long exportAll(ExportFormat format, Path file) {
+        return metrics.record(PREFIX + "exportAll", () -> dao.exportAll(format, file), rows -> rows);
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment() {
+        return metrics.record(PREFIX + "findSalaryStatsByDepartment", dao::findSalaryStatsByDepartment, List::size);
+    }
+
+    @Override
+    public List<SalaryStats> findSalaryStatsByDepartment(Date birthFrom, Date birthTo) {
+        return metrics.record(PREFIX + "findSalaryStatsByDepartment",
+                () -> dao.findSalaryStatsByDepartment(birthFrom, birthTo), List::size);
+    }
+
+    @Override
+    public List<Seller> findByDepartment(Department department) {
+        return metrics.record(PREFIX + "findByDepartment", () -> dao.findByDepartment(department), List::size);
+    }
+
+    @Override
+    public Page<Seller> findPage(PageCursor cursor, int limit) {
+        return metrics.record(PREFIX + "findPage", () -> dao.findPage(cursor, limit), p -> p.getItems().size());
+    }
+
+    @Override
+    public Page<Seller> findPageByDepartment(Department department, PageCursor cursor, int limit) {
+        return metrics.record(PREFIX + "findPageByDepartment",
+                () -> dao.findPageByDepartment(department, cursor, limit), p -> p.getItems().size());
+    }
+
+    //a latência gravada é a de abrir o cursor; as linhas são somadas quando o Stream é fechado
+    @Override
+    public Stream<Seller> streamAll() {
+        return counted(PREFIX + "streamAll", metrics.record(PREFIX + "streamAll", dao::streamAll, s -> 0));
+    }
+
+    @Override
+    public Stream<Seller> streamByDepartment(Department department) {
+        return counted(PREFIX + "streamByDepartment",
+                metrics.record(PREFIX + "streamByDepartment", () -> dao.streamByDepartment(department), s -> 0));
+    }
+
+    @Override
+    public void forEach(Consumer<Seller> action) {
+        LongAdder rows = new LongAdder();
+        metrics.record(PREFIX + "forEach", () -> dao.forEach(obj -> {
+            rows.increment();
+            action.accept(obj);
+        }), 0);
+        metrics.method(PREFIX + "forEach").addRows(rows.sum());
+    }
+
+    @Override
+    public void forEachParallel(int parallelism, Consumer<Seller> action) {
+        LongAdder rows = new LongAdder();
+        metrics.record(PREFIX + "forEachParallel", () -> dao.forEachParallel(parallelism, obj -> {
+            rows.increment();
+            action.accept(obj);
+        }), 0);
+        metrics.method(PREFIX + "forEachParallel").addRows(rows.sum());
+    }
+
+    @Override
+    public Changes<Seller> findModifiedSince(ChangeToken since, int limit) {
+        return metrics.record(PREFIX + "findModifiedSince", () -> dao.findModifiedSince(since, limit),
+                c -> c.getChanged().size() + c.getDeletedIds().size());
+    }
+
+    private Stream<Seller> counted(String name, Stream<Seller> stream) {
+        LongAdder rows = new LongAdder();
+        return stream.peek(obj -> rows.increment())
+                .onClose(() -> metrics.method(name).addRows(rows.sum()));
+    }
+}
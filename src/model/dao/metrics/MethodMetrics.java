@@ -0,0 +1,58 @@
+package model.dao.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//métricas de um método de DAO: latência, espera por conexão, linhas e erros
+public class MethodMetrics {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dbExceptions = new LongAdder();
+
+    public MethodMetrics(String name) {
+        this.name = name;
+    }
+
+    //grava uma chamada terminada com sucesso
+    public void recordSuccess(long latencyNanos, long waitNanos, long rowCount) {
+        latency.record(latencyNanos);
+        connectionWait.record(waitNanos);
+        rows.add(rowCount);
+    }
+
+    //grava uma chamada que lançou exceção; dbException indica se foi DbException
+    public void recordFailure(long latencyNanos, long waitNanos, boolean dbException) {
+        latency.record(latencyNanos);
+        connectionWait.record(waitNanos);
+        errors.increment();
+        if (dbException) {
+            dbExceptions.increment();
+        }
+    }
+
+    //soma linhas lidas depois do fim da chamada (ex.: Streams consumidos depois)
+    public void addRows(long rowCount) {
+        rows.add(rowCount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MethodStats snapshot() {
+        return new MethodStats(name, latency.getCount(), errors.sum(), dbExceptions.sum(), rows.sum(),
+                latency.getMean() / 1e3, latency.percentile(0.50) / 1e3, latency.percentile(0.99) / 1e3,
+                latency.percentile(0.999) / 1e3, latency.getMax() / 1e3,
+                connectionWait.getMean() / 1e3, connectionWait.percentile(0.99) / 1e3);
+    }
+
+    public void reset() {
+        latency.reset();
+        connectionWait.reset();
+        rows.reset();
+        errors.reset();
+        dbExceptions.reset();
+    }
+}
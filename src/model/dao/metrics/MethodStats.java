@@ -0,0 +1,94 @@
+package model.dao.metrics;
+
+import java.beans.ConstructorProperties;
+
+//fotografia das métricas de um método; tempos em microssegundos
+public class MethodStats {
+    private final String name;
+    private final long calls;
+    private final long errors;
+    private final long dbExceptions;
+    private final long rows;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+    private final double connectionWaitMeanMicros;
+    private final double connectionWaitP99Micros;
+
+    @ConstructorProperties({"name", "calls", "errors", "dbExceptions", "rows", "meanMicros", "p50Micros",
+            "p99Micros", "p999Micros", "maxMicros", "connectionWaitMeanMicros", "connectionWaitP99Micros"})
+    public MethodStats(String name, long calls, long errors, long dbExceptions, long rows, double meanMicros,
+                       double p50Micros, double p99Micros, double p999Micros, double maxMicros,
+                       double connectionWaitMeanMicros, double connectionWaitP99Micros) {
+        this.name = name;
+        this.calls = calls;
+        this.errors = errors;
+        this.dbExceptions = dbExceptions;
+        this.rows = rows;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+        this.connectionWaitMeanMicros = connectionWaitMeanMicros;
+        this.connectionWaitP99Micros = connectionWaitP99Micros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getDbExceptions() {
+        return dbExceptions;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    public double getConnectionWaitMeanMicros() {
+        return connectionWaitMeanMicros;
+    }
+
+    public double getConnectionWaitP99Micros() {
+        return connectionWaitP99Micros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{calls=%d, errors=%d, dbExceptions=%d, rows=%d, mean=%.1fus, p50=%.1fus, "
+                        + "p99=%.1fus, p999=%.1fus, max=%.1fus, connWaitMean=%.1fus, connWaitP99=%.1fus}",
+                name, calls, errors, dbExceptions, rows, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros,
+                connectionWaitMeanMicros, connectionWaitP99Micros);
+    }
+}
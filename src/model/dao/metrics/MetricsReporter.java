@@ -0,0 +1,8 @@
+package model.dao.metrics;
+
+import java.util.Map;
+
+//destino das métricas publicadas periodicamente pelo DaoMetrics (log, console, sistema de monitoramento...)
+public interface MetricsReporter {
+    void report(Map<String, MethodStats> methods);
+}
@@ -2,6 +2,7 @@ package model.entities;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.Objects;
 
 //Serializable transforma os objetos em sequências de bytes para que sejam gravados em arquivos e/ou trafegados em rede
@@ -12,6 +13,13 @@ public class Seller implements Serializable {
     private Date birthDate;
     private double baseSalary;
     private Department department;
+    //valores de quando o Seller foi lido ou gravado no BD, para saber o que mudou desde então
+    private transient Snapshot snapshot;
+
+    //campos gravados pelo update, usados para dizer quais foram alterados
+    public enum Field {
+        NAME, EMAIL, BIRTH_DATE, BASE_SALARY, DEPARTMENT
+    }
 
     public Seller() {
     }
@@ -73,6 +81,39 @@ public class Seller implements Serializable {
         this.department = department;
     }
 
+    //marca o estado atual como o que está gravado no BD; chamado pelo DAO depois de ler ou gravar o Seller
+    public void markClean() {
+        snapshot = new Snapshot(this);
+    }
+
+    /*
+    campos alterados desde o último markClean(). Um Seller que não veio do BD (ou foi desserializado) não tem
+    com o que comparar, então todos os campos contam como alterados.
+     */
+    public EnumSet<Field> getChangedFields() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            return EnumSet.allOf(Field.class);
+        }
+        EnumSet<Field> changed = EnumSet.noneOf(Field.class);
+        if (!Objects.equals(s.name, name)) {
+            changed.add(Field.NAME);
+        }
+        if (!Objects.equals(s.email, email)) {
+            changed.add(Field.EMAIL);
+        }
+        if (!Objects.equals(s.birthDate, birthDate != null ? birthDate.getTime() : null)) {
+            changed.add(Field.BIRTH_DATE);
+        }
+        if (Double.doubleToLongBits(s.baseSalary) != Double.doubleToLongBits(baseSalary)) {
+            changed.add(Field.BASE_SALARY);
+        }
+        if (!Objects.equals(s.departmentId, department != null ? department.getId() : null)) {
+            changed.add(Field.DEPARTMENT);
+        }
+        return changed;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -99,4 +140,21 @@ public class Seller implements Serializable {
                 ", department=" + department +
                 '}';
     }
+
+    //cópia dos valores; a data é guardada em milissegundos para pegar também alterações feitas no próprio Date
+    private static final class Snapshot {
+        final String name;
+        final String email;
+        final Long birthDate;
+        final double baseSalary;
+        final Integer departmentId;
+
+        Snapshot(Seller obj) {
+            name = obj.name;
+            email = obj.email;
+            birthDate = obj.birthDate != null ? obj.birthDate.getTime() : null;
+            baseSalary = obj.baseSalary;
+            departmentId = obj.department != null ? obj.department.getId() : null;
+        }
+    }
 }